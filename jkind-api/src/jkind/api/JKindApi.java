@@ -1,9 +1,15 @@
 package jkind.api;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -33,6 +39,8 @@ public class JKindApi extends KindApi {
 
 	protected SolverOption solver = null;
 
+	protected Integer serverPort = null;
+
 	/**
 	 * Set the maximum depth for BMC and k-induction
 	 * 
@@ -107,6 +115,20 @@ public class JKindApi extends KindApi {
 		intervalGeneralization = true;
 	}
 	
+	/**
+	 * Submit runs to a JKind server on this machine (started with "jkind
+	 * -server") instead of starting a new JVM for each run
+	 * 
+	 * @param port
+	 *            Port the server listens on
+	 */
+	public void setServerPort(int port) {
+		if (port <= 0) {
+			throw new JKindException("port must be positive");
+		}
+		this.serverPort = port;
+	}
+
 	/**
 	 * Run JKind on a Lustre program
 	 * 
@@ -127,7 +149,11 @@ public class JKindApi extends KindApi {
 			if (xmlFile.exists()) {
 				throw new JKindException("Existing XML file cannot be removed: " + xmlFile);
 			}
-			callJKind(lustreFile, xmlFile, result, monitor);
+			if (serverPort != null) {
+				callJKindServer(lustreFile, xmlFile, result, monitor);
+			} else {
+				callJKind(lustreFile, xmlFile, result, monitor);
+			}
 		} catch (JKindException e) {
 			throw e;
 		} catch (Throwable t) {
@@ -177,6 +203,92 @@ public class JKindApi extends KindApi {
 		}
 	}
 
+	private void callJKindServer(File lustreFile, File xmlFile, JKindResult result,
+			IProgressMonitor monitor) throws IOException, InterruptedException {
+		Socket socket = null;
+		try (JKindXmlFileInputStream xmlStream = new JKindXmlFileInputStream(xmlFile)) {
+			XmlParseThread parseThread = new XmlParseThread(xmlStream, result, Backend.JKIND);
+
+			int code = 0;
+			try {
+				result.start();
+				socket = new Socket(InetAddress.getLoopbackAddress(), serverPort);
+				sendJob(socket, getJKindArgs(lustreFile.getAbsoluteFile()));
+				parseThread.start();
+				code = readServerOutput(socket, result, monitor);
+			} finally {
+				if (socket != null) {
+					// Closing the connection cancels the run if still going
+					socket.close();
+				}
+
+				xmlStream.done();
+				parseThread.join();
+
+				if (monitor.isCanceled()) {
+					result.cancel();
+				} else {
+					result.done();
+				}
+				monitor.done();
+			}
+
+			if (code != 0 && !monitor.isCanceled()) {
+				throw new JKindException("Abnormal termination, exit code " + code);
+			}
+
+			if (parseThread.getThrowable() != null) {
+				throw new JKindException("Error parsing XML", parseThread.getThrowable());
+			}
+		}
+	}
+
+	private void sendJob(Socket socket, List<String> args) throws IOException {
+		Writer out = new OutputStreamWriter(socket.getOutputStream());
+		for (String arg : args) {
+			out.write(arg);
+			out.write("\n");
+		}
+		out.write("\n");
+		out.flush();
+	}
+
+	/**
+	 * Copy the framed output of the server to the result and return the exit
+	 * code of the run, see JKindServer for the format
+	 */
+	private int readServerOutput(Socket socket, JKindResult result, IProgressMonitor monitor)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		while (true) {
+			if (monitor.isCanceled()) {
+				return 0;
+			}
+
+			// Wait briefly for the next frame so cancellation is noticed
+			socket.setSoTimeout(100);
+			int first;
+			try {
+				first = in.read();
+			} catch (SocketTimeoutException e) {
+				continue;
+			}
+			if (first == -1) {
+				throw new JKindException("Connection to JKind server closed unexpectedly");
+			}
+
+			socket.setSoTimeout(0);
+			int length = (first << 24) | (in.readUnsignedByte() << 16)
+					| (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+			if (length == -1) {
+				return in.readInt();
+			}
+			for (int i = 0; i < length; i++) {
+				result.addText((char) in.readUnsignedByte());
+			}
+		}
+	}
+
 	private void readOutput(Process process, final JKindResult result, IProgressMonitor monitor)
 			throws IOException {
 		final InputStream stream = new BufferedInputStream(process.getInputStream());
@@ -213,6 +325,15 @@ public class JKindApi extends KindApi {
 	private ProcessBuilder getJKindProcessBuilder(File lustreFile) {
 		List<String> args = new ArrayList<>();
 		args.addAll(Arrays.asList(getJKindCommand()));
+		args.addAll(getJKindArgs(lustreFile));
+
+		ProcessBuilder builder = new ProcessBuilder(args);
+		builder.redirectErrorStream(true);
+		return builder;
+	}
+
+	private List<String> getJKindArgs(File lustreFile) {
+		List<String> args = new ArrayList<>();
 		args.add("-xml");
 		if (timeout != null) {
 			args.add("-timeout");
@@ -253,10 +374,7 @@ public class JKindApi extends KindApi {
 		}
 		
 		args.add(lustreFile.toString());
-
-		ProcessBuilder builder = new ProcessBuilder(args);
-		builder.redirectErrorStream(true);
-		return builder;
+		return args;
 	}
 
 	private String[] getJKindCommand() {
@@ -306,8 +424,27 @@ public class JKindApi extends KindApi {
 		return new File(lustreFile.toString() + ".xml");
 	}
 
+	/** Send an empty job, which the server answers without running JKind */
+	private void ping() throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverPort)) {
+			Writer out = new OutputStreamWriter(socket.getOutputStream());
+			out.write("\n");
+			out.flush();
+
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			if (in.readInt() != -1) {
+				throw new JKindException("Unexpected reply from JKind server");
+			}
+			in.readInt();
+		}
+	}
+
 	@Override
 	public void checkAvailable() throws Exception {
-		new ProcessBuilder(getJKindCommand()).start().waitFor();
+		if (serverPort != null) {
+			ping();
+		} else {
+			new ProcessBuilder(getJKindCommand()).start().waitFor();
+		}
 	}
 }
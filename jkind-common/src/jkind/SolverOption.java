@@ -1,7 +1,7 @@
 package jkind;
 
 public enum SolverOption {
-	YICES, CVC4, Z3, YICES2, MATHSAT, SMTINTERPOL;
+	YICES, CVC4, Z3, YICES2, MATHSAT, SMTINTERPOL, Z3_NATIVE;
 	
 	@Override
 	public String toString() {
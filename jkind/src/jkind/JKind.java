@@ -8,32 +8,44 @@ import jkind.lustre.Node;
 import jkind.lustre.Program;
 import jkind.slicing.DependencyMap;
 import jkind.slicing.LustreSlicer;
+import jkind.solvers.z3.Z3Library;
 import jkind.translation.Specification;
 import jkind.translation.Translate;
 
 public class JKind {
 	public static void main(String[] args) {
 		try {
-			JKindSettings settings = JKindArgumentParser.parse(args);
-			Program program = Main.parseLustre(settings.filename);
-
-			StaticAnalyzer.check(program, settings.solver);
-			if (!LinearChecker.check(program, Level.IGNORE)) {
-				if (settings.pdrMax > 0) {
-					Output.warning("disabling PDR due to non-linearities");
-					settings.pdrMax = 0;
-				}
-			}
-
-			Node main = Translate.translate(program);
-			DependencyMap dependencyMap = new DependencyMap(main, main.properties);
-			main = LustreSlicer.slice(main, dependencyMap);
-			Specification spec = new Specification(main, dependencyMap);
-			new Director(settings, spec).run();
+			getDirector(args).run();
 			System.exit(0); // Kills all threads
 		} catch (Throwable t) {
 			t.printStackTrace();
 			System.exit(ExitCodes.UNCAUGHT_EXCEPTION);
 		}
 	}
+
+	/** Parse the arguments and the program, and set up the analysis */
+	static Director getDirector(String[] args) throws Exception {
+		JKindSettings settings = JKindArgumentParser.parse(args);
+		Program program = Main.parseLustre(settings.filename);
+
+		if (settings.solver == SolverOption.Z3_NATIVE && !Z3Library.isAvailable()) {
+			Output.warning("unable to load Z3 in-process (" + Z3Library.getLoadFailure()
+					+ "), using z3 process instead");
+			settings.solver = SolverOption.Z3;
+		}
+
+		StaticAnalyzer.check(program, settings.solver);
+		if (!LinearChecker.check(program, Level.IGNORE)) {
+			if (settings.pdrMax > 0) {
+				Output.warning("disabling PDR due to non-linearities");
+				settings.pdrMax = 0;
+			}
+		}
+
+		Node main = Translate.translate(program);
+		DependencyMap dependencyMap = new DependencyMap(main, main.properties);
+		main = LustreSlicer.slice(main, dependencyMap);
+		Specification spec = new Specification(main, dependencyMap);
+		return new Director(settings, spec);
+	}
 }
@@ -11,6 +11,8 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 
 public class JKindArgumentParser {
+	private static final String CLUSTER_BMC = "cluster_bmc";
+	private static final String CLUSTER_K_INDUCTION = "cluster_k_induction";
 	private static final String EXCEL = "excel";
 	private static final String INDUCT_CEX = "induct_cex";
 	private static final String INTERVAL = "interval";
@@ -18,12 +20,18 @@ public class JKindArgumentParser {
 	private static final String NO_BMC = "no_bmc";
 	private static final String NO_INV_GEN = "no_inv_gen";
 	private static final String NO_K_INDUCTION = "no_k_induction";
+	private static final String PARTITION_K_INDUCTION = "partition_k_induction";
+	private static final String PDR_GROUP = "pdr_group";
 	private static final String PDR_MAX = "pdr_max";
+	private static final String PORTFOLIO = "portfolio";
 	private static final String READ_ADVICE = "read_advice";
 	private static final String REDUCE_INV = "reduce_inv";
 	private static final String SCRATCH = "scratch";
+	private static final String SHARED_BMC_K_INDUCTION = "shared_bmc_k_induction";
 	private static final String SMOOTH = "smooth";
 	private static final String SOLVER = "solver";
+	private static final String SOLVER_STATS = "solver_stats";
+	private static final String THREADS = "threads";
 	private static final String TIMEOUT = "timeout";
 	private static final String WRITE_ADVICE = "write_advice";
 	private static final String XML = "xml";
@@ -33,6 +41,10 @@ public class JKindArgumentParser {
 
 	private static Options getOptions() {
 		Options options = new Options();
+		options.addOption(CLUSTER_BMC, false,
+				"run separate bmc workers for properties with disjoint cones of influence");
+		options.addOption(CLUSTER_K_INDUCTION, false,
+				"run separate k-induction engines for properties with disjoint cones of influence");
 		options.addOption(EXCEL, false, "generate results in Excel format");
 		options.addOption(INDUCT_CEX, false, "generate inductive counterexamples");
 		options.addOption(INTERVAL, false, "generalize counterexamples using interval analysis");
@@ -40,14 +52,27 @@ public class JKindArgumentParser {
 		options.addOption(NO_BMC, false, "disable bounded model checking");
 		options.addOption(NO_INV_GEN, false, "disable invariant generation");
 		options.addOption(NO_K_INDUCTION, false, "disable k-induction");
+		options.addOption(PARTITION_K_INDUCTION, false,
+				"separate inductive properties using activation literals and unsat cores");
+		options.addOption(PDR_GROUP, false,
+				"check properties in a shared cone of influence together in one PDR instance");
 		options.addOption(PDR_MAX, true,
 				"maximum number of PDR parallel instances (0 to disable PDR)");
+		options.addOption(PORTFOLIO, false,
+				"deprioritize, pause, or stop engines which are not making progress");
 		options.addOption(READ_ADVICE, true, "read advice from specified file");
 		options.addOption(REDUCE_INV, false, "reduce and display invariants used");
 		options.addOption(SCRATCH, false, "produce files for debugging purposes");
+		options.addOption(SHARED_BMC_K_INDUCTION, false,
+				"run bmc and k-induction in one engine sharing a single solver");
 		options.addOption(SMOOTH, false, "smooth counterexamples (minimal changes in input values)");
 		options.addOption(SOLVER, true,
-				"SMT solver (default: yices, alternatives: cvc4, z3, yices2, mathsat, smtinterpol)");
+				"SMT solver (default: yices, alternatives: cvc4, z3, yices2, mathsat, smtinterpol, "
+						+ "z3_native)");
+		options.addOption(SOLVER_STATS, false,
+				"write solver statistics per engine and step to a JSON file (and the XML output)");
+		options.addOption(THREADS, true,
+				"maximum number of solver threads to run at once (default: 0 for no limit)");
 		options.addOption(TIMEOUT, true, "maximum runtime in seconds (default: 100)");
 		options.addOption(WRITE_ADVICE, true, "write advice to specified file");
 		options.addOption(XML, false, "generate results in XML format");
@@ -93,6 +118,14 @@ public class JKindArgumentParser {
 			System.exit(0);
 		}
 
+		if (line.hasOption(CLUSTER_BMC)) {
+			settings.clusterBmc = true;
+		}
+
+		if (line.hasOption(CLUSTER_K_INDUCTION)) {
+			settings.clusterKInduction = true;
+		}
+
 		if (line.hasOption(EXCEL)) {
 			settings.excel = true;
 		}
@@ -117,6 +150,14 @@ public class JKindArgumentParser {
 			settings.n = parseNonnegativeInt(line.getOptionValue(N));
 		}
 
+		if (line.hasOption(PARTITION_K_INDUCTION)) {
+			settings.partitionKInduction = true;
+		}
+
+		if (line.hasOption(PDR_GROUP)) {
+			settings.pdrGroup = true;
+		}
+
 		if (line.hasOption(PDR_MAX)) {
 			settings.pdrMax = parseNonnegativeInt(line.getOptionValue(PDR_MAX));
 		} else {
@@ -125,6 +166,10 @@ public class JKindArgumentParser {
 			settings.pdrMax = Math.max(1, heuristic);
 		}
 
+		if (line.hasOption(PORTFOLIO)) {
+			settings.portfolio = true;
+		}
+
 		if (line.hasOption(READ_ADVICE)) {
 			settings.readAdvice = line.getOptionValue(READ_ADVICE);
 		}
@@ -133,6 +178,10 @@ public class JKindArgumentParser {
 			settings.reduceInvariants = true;
 		}
 
+		if (line.hasOption(THREADS)) {
+			settings.threads = parseNonnegativeInt(line.getOptionValue(THREADS));
+		}
+
 		if (line.hasOption(TIMEOUT)) {
 			settings.timeout = parseNonnegativeInt(line.getOptionValue(TIMEOUT));
 		}
@@ -141,6 +190,10 @@ public class JKindArgumentParser {
 			settings.scratch = true;
 		}
 
+		if (line.hasOption(SHARED_BMC_K_INDUCTION)) {
+			settings.sharedBmcKInduction = true;
+		}
+
 		if (line.hasOption(SMOOTH)) {
 			settings.smoothCounterexamples = true;
 		}
@@ -153,6 +206,10 @@ public class JKindArgumentParser {
 			settings.solver = getSolverOption(line.getOptionValue(SOLVER));
 		}
 
+		if (line.hasOption(SOLVER_STATS)) {
+			settings.solverStatistics = true;
+		}
+
 		if (line.hasOption(WRITE_ADVICE)) {
 			settings.writeAdvice = line.getOptionValue(WRITE_ADVICE);
 		}
@@ -187,7 +244,7 @@ public class JKindArgumentParser {
 		}
 	}
 
-	private static SolverOption getSolverOption(String solver) {
+	static SolverOption getSolverOption(String solver) {
 		List<SolverOption> options = Arrays.asList(SolverOption.values());
 		for (SolverOption option : options) {
 			if (solver.equals(option.toString())) {
@@ -228,5 +285,11 @@ public class JKindArgumentParser {
 		if (!settings.boundedModelChecking && settings.kInduction) {
 			Output.warning("k-induction requires bmc");
 		}
+
+		if (settings.sharedBmcKInduction
+				&& (!settings.boundedModelChecking || !settings.kInduction)) {
+			Output.warning("shared bmc and k-induction requires both to be enabled");
+			settings.sharedBmcKInduction = false;
+		}
 	}
 }
@@ -0,0 +1,218 @@
+package jkind;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A long running server which keeps warm JKind worker JVMs, each with solver
+ * processes already started, and hands them jobs from clients on the local
+ * machine (see JKindApi.setServerPort). A worker which finishes a job takes
+ * the next one, see JKindWorker, and is only replaced if it exits or the job
+ * is cancelled.
+ *
+ * A client sends the JKind arguments, one per line, followed by a blank line.
+ * The server replies with the output of the run as frames of an int length
+ * followed by that many bytes, then a length of -1 followed by the int exit
+ * code. Closing the connection cancels the job. An empty job is a ping,
+ * answered at once with exit code 0 and without involving a worker.
+ */
+public class JKindServer {
+	private final JKindServerSettings settings;
+	private final BlockingQueue<Process> workers = new LinkedBlockingQueue<>();
+
+	public static void main(String[] args) {
+		try {
+			JKindServerSettings settings = JKindServerArgumentParser.parse(args);
+			new JKindServer(settings).run();
+		} catch (Throwable t) {
+			t.printStackTrace();
+			System.exit(ExitCodes.UNCAUGHT_EXCEPTION);
+		}
+	}
+
+	public JKindServer(JKindServerSettings settings) {
+		this.settings = settings;
+	}
+
+	public void run() throws IOException {
+		addShutdownHook();
+		for (int i = 0; i < settings.workers; i++) {
+			workers.add(startWorker());
+		}
+
+		try (ServerSocket server = new ServerSocket(settings.port, 50,
+				InetAddress.getLoopbackAddress())) {
+			Output.println("JKind server listening on port " + server.getLocalPort());
+			while (true) {
+				Socket client = server.accept();
+				new Thread(() -> serve(client), "jkind-server-job").start();
+			}
+		}
+	}
+
+	private void addShutdownHook() {
+		Runtime.getRuntime().addShutdownHook(new Thread("shutdown-hook") {
+			@Override
+			public void run() {
+				for (Process worker : workers) {
+					worker.destroy();
+				}
+			}
+		});
+	}
+
+	private Process startWorker() throws IOException {
+		List<String> args = new ArrayList<>();
+		args.add(new File(new File(System.getProperty("java.home"), "bin"), "java").toString());
+		String classPath = System.getProperty("java.class.path");
+		if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+			// Runnable jar with its own loader for the bundled libraries
+			args.add("-jar");
+			args.add(classPath);
+		} else {
+			args.add("-cp");
+			args.add(classPath);
+			args.add(Main.class.getName());
+		}
+		args.add("-worker");
+		args.add(settings.solver.toString());
+		args.add(Integer.toString(settings.prestart));
+
+		ProcessBuilder builder = new ProcessBuilder(args);
+		builder.redirectErrorStream(true);
+		return builder.start();
+	}
+
+	private void serve(Socket client) {
+		Process worker = null;
+		boolean reusable = false;
+		try (Socket socket = client) {
+			List<String> args = readJob(socket.getInputStream());
+			if (args.isEmpty()) {
+				ping(socket);
+				return;
+			}
+			worker = workers.take();
+			AtomicBoolean finished = new AtomicBoolean(false);
+			watchForCancel(socket, worker, finished);
+
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			// Claim the worker before the client sees the exit code, since the
+			// client then closes the connection, which looks like a cancel
+			reusable = runJob(worker, args, out) && finished.compareAndSet(false, true);
+			out.writeInt(-1);
+			out.writeInt(reusable ? 0 : worker.waitFor());
+			out.flush();
+		} catch (IOException | InterruptedException e) {
+			// The client went away, the worker is discarded below unless it
+			// already finished the job
+		} finally {
+			if (reusable) {
+				workers.add(worker);
+			} else if (worker != null) {
+				worker.destroy();
+				replaceWorker();
+			}
+		}
+	}
+
+	private static void ping(Socket socket) throws IOException {
+		DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+		out.writeInt(-1);
+		out.writeInt(0);
+		out.flush();
+	}
+
+	private void replaceWorker() {
+		try {
+			workers.add(startWorker());
+		} catch (IOException e) {
+			Output.error("unable to start JKind worker: " + e.getMessage());
+		}
+	}
+
+	private static List<String> readJob(InputStream stream) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(stream));
+		List<String> args = new ArrayList<>();
+		String line;
+		while ((line = in.readLine()) != null && !line.isEmpty()) {
+			args.add(line);
+		}
+		return args;
+	}
+
+	private static void watchForCancel(Socket socket, Process worker, AtomicBoolean finished) {
+		Thread watcher = new Thread(() -> {
+			try {
+				// Clients send nothing after the job, so this only returns
+				// once the connection is closed
+				while (socket.getInputStream().read() != -1) {
+				}
+			} catch (IOException e) {
+			}
+			if (finished.compareAndSet(false, true)) {
+				worker.destroy();
+			}
+		}, "jkind-server-cancel");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Send a job to the worker and forward its output to the client. Returns
+	 * true if the worker finished the job and can take another, or false if
+	 * it exited.
+	 */
+	private static boolean runJob(Process worker, List<String> args, DataOutputStream out)
+			throws IOException {
+		PrintWriter toWorker = new PrintWriter(worker.getOutputStream());
+		for (String arg : args) {
+			toWorker.println(arg);
+		}
+		toWorker.println();
+		toWorker.flush();
+
+		// Output is forwarded a line at a time so the done marker can be seen
+		InputStream fromWorker = new BufferedInputStream(worker.getInputStream());
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = fromWorker.read()) != -1) {
+			line.write(b);
+			if (b == '\n') {
+				if (line.toString().trim().equals(JKindWorker.JOB_DONE)) {
+					return true;
+				}
+				writeFrame(out, line);
+				if (fromWorker.available() == 0) {
+					out.flush();
+				}
+			}
+		}
+		writeFrame(out, line);
+		return false;
+	}
+
+	private static void writeFrame(DataOutputStream out, ByteArrayOutputStream bytes)
+			throws IOException {
+		if (bytes.size() > 0) {
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			bytes.reset();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package jkind;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+
+public class JKindServerArgumentParser {
+	final private static String PORT = "port";
+	final private static String PRESTART = "prestart";
+	final private static String SOLVER = "solver";
+	final private static String WORKERS = "workers";
+	final private static String VERSION = "version";
+	final private static String HELP = "help";
+
+	private static Options getOptions() {
+		Options options = new Options();
+		options.addOption(PORT, true, "local port to listen on (default: 5151)");
+		options.addOption(PRESTART, true,
+				"solver processes each worker starts ahead of time (default: 2)");
+		options.addOption(SOLVER, true, "solver to start ahead of time (default: yices)");
+		options.addOption(WORKERS, true, "number of warm JKind workers (default: 2)");
+		options.addOption(VERSION, false, "display version information");
+		options.addOption(HELP, false, "print this message");
+		return options;
+	}
+
+	public static JKindServerSettings parse(String[] args) {
+		CommandLineParser parser = new BasicParser();
+		try {
+			return getSettings(parser.parse(getOptions(), args));
+		} catch (Throwable t) {
+			Output.fatal(ExitCodes.INVALID_OPTIONS, "reading command line arguments: " + t.getMessage());
+			return null;
+		}
+	}
+
+	private static void printHelp() {
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.printHelp("jkind -server [options]", getOptions());
+	}
+
+	private static JKindServerSettings getSettings(CommandLine line) {
+		JKindServerSettings settings = new JKindServerSettings();
+		if (line.hasOption(VERSION)) {
+			Output.println("JKind " + Main.VERSION);
+			System.exit(0);
+		}
+
+		if (line.hasOption(HELP)) {
+			printHelp();
+			System.exit(0);
+		}
+
+		if (line.hasOption(PORT)) {
+			settings.port = Integer.parseInt(line.getOptionValue(PORT));
+		}
+
+		if (line.hasOption(PRESTART)) {
+			settings.prestart = Math.max(0, Integer.parseInt(line.getOptionValue(PRESTART)));
+		}
+
+		if (line.hasOption(SOLVER)) {
+			settings.solver = JKindArgumentParser.getSolverOption(line.getOptionValue(SOLVER));
+		}
+
+		if (line.hasOption(WORKERS)) {
+			settings.workers = Math.max(1, Integer.parseInt(line.getOptionValue(WORKERS)));
+		}
+
+		if (line.getArgs().length != 0) {
+			printHelp();
+			System.exit(ExitCodes.INVALID_OPTIONS);
+		}
+
+		return settings;
+	}
+}
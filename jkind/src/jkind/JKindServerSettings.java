@@ -0,0 +1,8 @@
+package jkind;
+
+public class JKindServerSettings {
+	public int port = 5151;
+	public int workers = 2;
+	public SolverOption solver = SolverOption.YICES;
+	public int prestart = 2;
+}
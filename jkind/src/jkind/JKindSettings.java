@@ -10,9 +10,16 @@ public class JKindSettings {
 	public boolean xmlToStdout = false;
 	
 	public boolean boundedModelChecking = true;
+	public boolean clusterBmc = false;
 	public boolean kInduction = true;
+	public boolean clusterKInduction = false;
+	public boolean sharedBmcKInduction = false;
+	public boolean partitionKInduction = false;
 	public boolean invariantGeneration = true;
     public int pdrMax = 1;
+	public boolean pdrGroup = false;
+	public int threads = 0;
+	public boolean portfolio = false;
 	public boolean inductiveCounterexamples = false;
 	public boolean reduceInvariants = false;
 	public boolean smoothCounterexamples = false;
@@ -20,6 +27,7 @@ public class JKindSettings {
 	
 	public SolverOption solver = SolverOption.YICES;
 	public boolean scratch = false;
+	public boolean solverStatistics = false;
 
 	public String writeAdvice = null;
 	public String readAdvice = null;
@@ -0,0 +1,105 @@
+package jkind;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import jkind.engines.Director;
+import jkind.solvers.SolverProcessPool;
+import jkind.solvers.cvc4.Cvc4Solver;
+import jkind.solvers.mathsat.MathSatSolver;
+import jkind.solvers.yices.YicesSolver;
+import jkind.solvers.yices2.Yices2Solver;
+import jkind.solvers.z3.Z3Solver;
+
+/**
+ * A JVM started ahead of time by JKindServer. It keeps solver processes
+ * started, then runs JKind for each job read from standard in: the arguments,
+ * one per line and ended by a blank line. After a job it prints JOB_DONE and
+ * waits for the next one, so the JVM and the pooled solver processes are
+ * reused. A job which ends with an error, or leaves engines which cannot be
+ * stopped, exits the JVM instead.
+ */
+public class JKindWorker {
+	public static final String JOB_DONE = "@JKIND-JOB-DONE";
+
+	public static void main(String[] args) {
+		try {
+			SolverOption solver = null;
+			int prestart = 0;
+			if (args.length == 2) {
+				solver = JKindArgumentParser.getSolverOption(args[0]);
+				prestart = Integer.parseInt(args[1]);
+			}
+
+			SolverProcessPool.enable();
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+			while (true) {
+				if (solver != null) {
+					// Replace the processes used by the previous job
+					prestart(solver, prestart);
+				}
+
+				List<String> jobArgs = readJob(in);
+				if (jobArgs.isEmpty()) {
+					System.exit(0);
+				}
+
+				Director director = JKind.getDirector(jobArgs.toArray(new String[jobArgs.size()]));
+				director.run();
+				if (!director.stopEngines()) {
+					System.exit(0); // Kills all threads
+				}
+				System.out.println(JOB_DONE);
+				System.out.flush();
+			}
+		} catch (Throwable t) {
+			t.printStackTrace();
+			System.exit(ExitCodes.UNCAUGHT_EXCEPTION);
+		}
+	}
+
+	private static void prestart(SolverOption solver, int count) {
+		ProcessBuilder processBuilder = getProcessBuilder(solver);
+		if (processBuilder == null) {
+			return;
+		}
+
+		try {
+			SolverProcessPool.prestart(processBuilder, count);
+		} catch (IOException e) {
+			// The solver will fail again, with a proper message, if it is used
+		}
+	}
+
+	private static ProcessBuilder getProcessBuilder(SolverOption solver) {
+		switch (solver) {
+		case YICES:
+			return YicesSolver.getProcessBuilder();
+		case CVC4:
+			return Cvc4Solver.getProcessBuilder();
+		case Z3:
+			return Z3Solver.getProcessBuilder();
+		case YICES2:
+			return Yices2Solver.getProcessBuilder();
+		case MATHSAT:
+			return MathSatSolver.getProcessBuilder();
+		case SMTINTERPOL:
+		case Z3_NATIVE:
+			// Runs in process
+			return null;
+		}
+		throw new IllegalArgumentException("Unknown solver: " + solver);
+	}
+
+	private static List<String> readJob(BufferedReader in) throws IOException {
+		List<String> args = new ArrayList<>();
+		String line;
+		while ((line = in.readLine()) != null && !line.isEmpty()) {
+			args.add(line);
+		}
+		return args;
+	}
+}
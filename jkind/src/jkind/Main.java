@@ -36,7 +36,7 @@ public class Main {
 	final public static String VERSION = "2.0";
 
 	public static void main(String[] args) {
-		String availableEntryPoints = "Available entry points: -jkind, -jlustre2kind, -jlustre2excel, -benchmark";
+		String availableEntryPoints = "Available entry points: -jkind, -jlustre2kind, -jlustre2excel, -benchmark, -server";
 		if (args.length == 0) {
 			Output.println("JKind Suite " + VERSION);
 			Output.println(availableEntryPoints);
@@ -63,6 +63,15 @@ public class Main {
 			Benchmark.main(subArgs);
 			break;
 
+		case "-server":
+			JKindServer.main(subArgs);
+			break;
+
+		case "-worker":
+			// Started by JKindServer, not meant to be run directly
+			JKindWorker.main(subArgs);
+			break;
+
 		default:
 			Output.error("unknown entry point: " + entryPoint);
 			Output.println(availableEntryPoints);
@@ -51,7 +51,7 @@ public class StaticAnalyzer {
 		valid = valid && propertiesUnique(program);
 		valid = valid && propertiesExist(program);
 		valid = valid && propertiesBoolean(program);
-		if (solver != SolverOption.Z3) {
+		if (solver != SolverOption.Z3 && solver != SolverOption.Z3_NATIVE) {
 			valid = valid && LinearChecker.check(program, Level.ERROR);
 		}
 		
@@ -76,7 +76,7 @@ public class StaticAnalyzer {
 		warnUnusedAsserts(program);
 		warnAlgebraicLoops(program);
 		WarnUnguardedPreVisitor.check(program);
-		if (solver == SolverOption.Z3) {
+		if (solver == SolverOption.Z3 || solver == SolverOption.Z3_NATIVE) {
 			LinearChecker.check(program, Level.WARNING);
 		}
 	}
@@ -0,0 +1,272 @@
+package jkind.engines;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jkind.JKindSettings;
+import jkind.engines.invariant.InvariantSet;
+import jkind.engines.messages.InductiveCounterexampleMessage;
+import jkind.engines.messages.InvalidMessage;
+import jkind.engines.messages.InvariantMessage;
+import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
+import jkind.engines.messages.UnknownMessage;
+import jkind.engines.messages.ValidMessage;
+import jkind.lustre.Expr;
+import jkind.lustre.IdExpr;
+import jkind.lustre.values.BooleanValue;
+import jkind.sexp.Cons;
+import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
+import jkind.slicing.Dependency;
+import jkind.slicing.DependencyVisitor;
+import jkind.solvers.Label;
+import jkind.solvers.Model;
+import jkind.solvers.Result;
+import jkind.solvers.SatResult;
+import jkind.solvers.UnknownResult;
+import jkind.solvers.UnsatResult;
+import jkind.translation.Specification;
+import jkind.util.SexpUtil;
+import jkind.util.StreamIndex;
+
+/**
+ * The inductive step and invariant handling shared by the k-induction
+ * engines. Subclasses drive the unrolling and decide when the base step
+ * allows each inductive step to be checked.
+ */
+public abstract class AbstractKInductionEngine extends SolverBasedEngine {
+	protected int kCurrent = 0;
+	protected InvariantSet invariants = new InvariantSet();
+
+	// Activation literals guarding each property's hypotheses, and the number
+	// of steps asserted under each, see partitionProperties
+	private final Map<String, Symbol> hypothesisLiterals = new HashMap<>();
+	private final Map<String, Integer> hypothesisDepths = new HashMap<>();
+
+	public AbstractKInductionEngine(String name, Specification spec, JKindSettings settings,
+			Director director) {
+		super(name, spec, settings, director);
+	}
+
+	protected void assertTransitionAndInvariants(int k) {
+		assertInductiveTransition(k);
+		assertInvariants(invariants.getInvariants(), k);
+	}
+
+	protected void checkInductiveStep(int k) {
+		if (settings.partitionKInduction) {
+			partitionProperties(k);
+			return;
+		}
+
+		List<String> possiblyValid = new ArrayList<>(properties);
+
+		while (!possiblyValid.isEmpty()) {
+			Result result = solver.query(getInductiveQuery(k, possiblyValid));
+
+			if (result instanceof SatResult || result instanceof UnknownResult) {
+				Model model = getModel(result);
+				Iterator<String> iterator = possiblyValid.iterator();
+				while (iterator.hasNext()) {
+					String p = iterator.next();
+					StreamIndex si = new StreamIndex(p, k);
+					BooleanValue v = (BooleanValue) model.getValue(si);
+					if (!v.value) {
+						sendInductiveCounterexample(p, k + 1, model);
+						iterator.remove();
+					}
+				}
+			} else if (result instanceof UnsatResult) {
+				properties.removeAll(possiblyValid);
+				addPropertiesAsInvariants(k, possiblyValid);
+				sendValid(possiblyValid, k);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Like checkInductiveStep, but the hypotheses of each property are
+	 * guarded by their own activation literal. Within a round the hypotheses
+	 * stay fixed and each model removes every conclusion it falsifies, since
+	 * those cannot hold under fewer hypotheses either. A new round with fewer
+	 * hypotheses is only needed if the unsat core of the final query uses a
+	 * hypothesis which has been removed.
+	 */
+	private void partitionProperties(int k) {
+		List<String> hypotheses = new ArrayList<>(properties);
+
+		while (!hypotheses.isEmpty()) {
+			List<Symbol> assumptions = new ArrayList<>();
+			Map<Label, String> owners = new HashMap<>();
+			for (String p : hypotheses) {
+				Symbol literal = getHypothesisLiteral(p, k);
+				assumptions.add(literal);
+				owners.put(new Label(literal.str), p);
+			}
+
+			List<String> possiblyValid = new ArrayList<>(hypotheses);
+			Set<String> falsified = new HashSet<>();
+			UnsatResult proof = null;
+			while (proof == null) {
+				Sexp query = StreamIndex.conjoinEncodings(possiblyValid, k);
+				Result result = solver.query(assumptions, query);
+
+				if (result instanceof UnsatResult) {
+					proof = (UnsatResult) result;
+				} else {
+					Model model = getModel(result);
+					Iterator<String> iterator = possiblyValid.iterator();
+					while (iterator.hasNext()) {
+						String p = iterator.next();
+						StreamIndex si = new StreamIndex(p, k);
+						BooleanValue v = (BooleanValue) model.getValue(si);
+						if (!v.value) {
+							sendInductiveCounterexample(p, k + 1, model);
+							iterator.remove();
+							falsified.add(p);
+						}
+					}
+					if (possiblyValid.isEmpty()) {
+						return;
+					}
+				}
+			}
+
+			if (!usesAny(proof, owners, falsified)) {
+				properties.removeAll(possiblyValid);
+				addPropertiesAsInvariants(k, possiblyValid);
+				sendValid(possiblyValid, k);
+				return;
+			}
+			hypotheses = possiblyValid;
+		}
+	}
+
+	private Symbol getHypothesisLiteral(String prop, int k) {
+		Symbol literal = hypothesisLiterals.get(prop);
+		if (literal == null) {
+			literal = solver.createActivationLiteral("hyp");
+			hypothesisLiterals.put(prop, literal);
+		}
+
+		for (int i = hypothesisDepths.getOrDefault(prop, 0); i < k; i++) {
+			Sexp hypothesis = new StreamIndex(prop, i).getEncoded();
+			solver.assertSexp(new Cons("=>", literal, hypothesis));
+		}
+		hypothesisDepths.put(prop, k);
+		return literal;
+	}
+
+	private boolean usesAny(UnsatResult proof, Map<Label, String> owners, Set<String> props) {
+		for (Label label : proof.getUnsatCore()) {
+			if (props.contains(owners.get(label))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected Model getModel(Result result) {
+		if (result instanceof SatResult) {
+			return ((SatResult) result).getModel();
+		} else if (result instanceof UnknownResult) {
+			return ((UnknownResult) result).getModel();
+		} else {
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private Sexp getInductiveQuery(int k, List<String> possiblyValid) {
+		List<Sexp> hyps = new ArrayList<>();
+		for (int i = 0; i < k; i++) {
+			hyps.add(StreamIndex.conjoinEncodings(possiblyValid, i));
+		}
+		Sexp conc = StreamIndex.conjoinEncodings(possiblyValid, k);
+
+		return new Cons("=>", SexpUtil.conjoin(hyps), conc);
+	}
+
+	private void addPropertiesAsInvariants(int k, List<String> valid) {
+		List<Expr> newInvariants = valid.stream().map(IdExpr::new).collect(toList());
+		invariants.addAll(newInvariants);
+		assertNewInvariants(newInvariants, k);
+	}
+
+	private void assertNewInvariants(List<Expr> invariants, int limit) {
+		for (int i = 0; i <= limit; i++) {
+			assertInvariants(invariants, i);
+		}
+	}
+
+	private void assertInvariants(List<Expr> invariants, int i) {
+		solver.assertSexp(SexpUtil.conjoinInvariants(invariants, i));
+	}
+
+	/** Messages */
+
+	private void sendValid(List<String> valid, int k) {
+		Itinerary itinerary = director.getValidMessageItinerary();
+		Message vm = new ValidMessage(getName(), valid, k, invariants.getInvariants(), itinerary);
+		director.broadcast(vm);
+	}
+
+	private void sendInductiveCounterexample(String p, int length, Model model) {
+		if (settings.inductiveCounterexamples) {
+			director.broadcast(new InductiveCounterexampleMessage(p, length, model));
+		}
+	}
+
+	@Override
+	protected void handleMessage(InductiveCounterexampleMessage icm) {
+	}
+
+	@Override
+	protected void handleMessage(InvalidMessage im) {
+		properties.removeAll(im.invalid);
+	}
+
+	@Override
+	protected void handleMessage(InvariantMessage im) {
+		List<Expr> newInvariants = inSlice(im.invariants);
+		invariants.addAll(newInvariants);
+		assertNewInvariants(newInvariants, kCurrent - 1);
+	}
+
+	@Override
+	protected void handleMessage(UnknownMessage um) {
+		properties.removeAll(um.unknown);
+	}
+
+	@Override
+	protected void handleMessage(ValidMessage vm) {
+		properties.removeAll(vm.valid);
+		List<String> valid = vm.valid.stream().filter(spec.typeMap::containsKey).collect(toList());
+		addPropertiesAsInvariants(kCurrent - 1, valid);
+	}
+
+	/**
+	 * When running on a slice of the specification, invariants from other
+	 * engines may mention variables we have not declared
+	 */
+	private List<Expr> inSlice(List<Expr> exprs) {
+		return exprs.stream().filter(this::inSlice).collect(toList());
+	}
+
+	private boolean inSlice(Expr expr) {
+		for (Dependency dep : DependencyVisitor.get(expr)) {
+			if (!spec.typeMap.containsKey(dep.name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
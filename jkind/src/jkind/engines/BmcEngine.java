@@ -1,6 +1,7 @@
 package jkind.engines;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -10,10 +11,16 @@ import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
 import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
+import jkind.lustre.VarDecl;
 import jkind.lustre.values.BooleanValue;
+import jkind.sexp.Sexp;
+import jkind.slicing.DependencySet;
+import jkind.slicing.ModelSlicer;
 import jkind.solvers.Model;
+import jkind.solvers.QueryFuture;
 import jkind.solvers.Result;
 import jkind.solvers.SatResult;
 import jkind.solvers.UnknownResult;
@@ -24,32 +31,65 @@ public class BmcEngine extends SolverBasedEngine {
 	private List<String> validProperties = new ArrayList<>();
 
 	public BmcEngine(Specification spec, JKindSettings settings, Director director) {
-		super("bmc", spec, settings, director);
+		this("bmc", spec, settings, director);
+	}
+
+	public BmcEngine(String name, Specification spec, JKindSettings settings, Director director) {
+		super(name, spec, settings, director);
 	}
 
 	@Override
 	public void main() {
 		createVariables(-1);
+		Step next = new Step(0);
 		for (int k = 0; k < settings.n; k++) {
-			comment("K = " + (k + 1));
+			beginStep(k + 1);
 			processMessages();
 			if (properties.isEmpty()) {
 				break;
 			}
-			createVariables(k);
-			assertBaseTransition(k);
-			checkProperties(k);
+			checkpoint();
+			next.assertStep();
+			next = checkProperties(k);
 			assertProperties(k);
 		}
 	}
 
-	private void checkProperties(int k) {
-		Result result;
-		do {
-			result = solver.query(StreamIndex.conjoinEncodings(properties, k));
+	/**
+	 * The variables, type constraints, and base transition for step k. These
+	 * are built while the solver works on the previous step.
+	 */
+	private class Step {
+		private final List<VarDecl> varDecls;
+		private final List<Sexp> typeConstraints;
+		private final Sexp transition;
+
+		public Step(int k) {
+			this.varDecls = getOffsetVarDecls(k);
+			this.typeConstraints = getTypeConstraints(k);
+			this.transition = getBaseTransition(k);
+		}
+
+		public void assertStep() {
+			for (VarDecl vd : varDecls) {
+				solver.define(vd);
+			}
+			for (Sexp constraint : typeConstraints) {
+				solver.assertSexp(constraint);
+			}
+			solver.assertSexp(transition);
+		}
+	}
+
+	private Step checkProperties(int k) {
+		QueryFuture future = solver.submitLazyQuery(StreamIndex.conjoinEncodings(properties, k));
+		Step next = new Step(k + 1);
 
+		Result result = future.get();
+		while (true) {
 			if (result instanceof SatResult) {
 				Model model = ((SatResult) result).getModel();
+				model.prefetch(StreamIndex.getEncodedNames(StreamIndex.fromList(properties, k)));
 				List<String> invalid = new ArrayList<>();
 				Iterator<String> iterator = properties.iterator();
 				while (iterator.hasNext()) {
@@ -66,18 +106,32 @@ public class BmcEngine extends SolverBasedEngine {
 				sendUnknown(properties);
 				properties.clear();
 			}
-		} while (!properties.isEmpty() && result instanceof SatResult);
+
+			if (properties.isEmpty() || !(result instanceof SatResult)) {
+				break;
+			}
+			result = solver.lazyQuery(StreamIndex.conjoinEncodings(properties, k));
+		}
 
 		sendBaseStep(k);
+		return next;
 	}
 
 	private void sendInvalid(List<String> invalid, int k, Model model) {
+		// The model may be backed by the solver, so take only the values
+		// needed for the counterexamples before the solver is used again
+		DependencySet cone = new DependencySet();
+		for (String p : invalid) {
+			cone.addAll(spec.dependencyMap.get(p));
+		}
+		Model sliced = ModelSlicer.slice(model, cone);
+
 		Itinerary itinerary = director.getInvalidMessageItinerary();
-		director.broadcast(new InvalidMessage(getName(), invalid, k + 1, model, itinerary));
+		director.broadcast(new InvalidMessage(getName(), invalid, k + 1, sliced, itinerary));
 	}
 
 	private void sendBaseStep(int k) {
-		director.broadcast(new BaseStepMessage(k + 1, properties));
+		director.broadcast(new BaseStepMessage(getName(), k + 1, properties));
 	}
 
 	private void sendUnknown(List<String> unknown) {
@@ -95,6 +149,16 @@ public class BmcEngine extends SolverBasedEngine {
 		}
 	}
 
+	@Override
+	protected int getPriority() {
+		return Scheduler.BMC;
+	}
+
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, ValidMessage.class);
+	}
+
 	@Override
 	protected void handleMessage(BaseStepMessage bsm) {
 	}
@@ -119,6 +183,11 @@ public class BmcEngine extends SolverBasedEngine {
 	@Override
 	protected void handleMessage(ValidMessage vm) {
 		properties.removeAll(vm.valid);
-		validProperties.addAll(vm.valid);
+		for (String valid : vm.valid) {
+			// Properties outside of our slice cannot be asserted
+			if (spec.typeMap.containsKey(valid)) {
+				validProperties.add(valid);
+			}
+		}
 	}
 }
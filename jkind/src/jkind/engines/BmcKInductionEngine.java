@@ -0,0 +1,132 @@
+package jkind.engines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import jkind.JKindSettings;
+import jkind.engines.messages.BaseStepMessage;
+import jkind.engines.messages.InvalidMessage;
+import jkind.engines.messages.InvariantMessage;
+import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
+import jkind.engines.messages.UnknownMessage;
+import jkind.engines.messages.ValidMessage;
+import jkind.lustre.values.BooleanValue;
+import jkind.sexp.Cons;
+import jkind.sexp.Sexp;
+import jkind.solvers.Model;
+import jkind.solvers.Result;
+import jkind.solvers.SatResult;
+import jkind.solvers.UnknownResult;
+import jkind.translation.Specification;
+import jkind.util.StreamIndex;
+
+/**
+ * Bounded model checking and k-induction sharing a single solver. The
+ * transition relation is unrolled once with the initial state left open at
+ * step 0, as in k-induction. Base case queries assume INIT, and the facts
+ * they establish are only asserted under INIT so that they do not constrain
+ * the inductive step.
+ */
+public class BmcKInductionEngine extends AbstractKInductionEngine {
+	public BmcKInductionEngine(Specification spec, JKindSettings settings, Director director) {
+		this("bmc-k-induction", spec, settings, director);
+	}
+
+	public BmcKInductionEngine(String name, Specification spec, JKindSettings settings,
+			Director director) {
+		super(name, spec, settings, director);
+	}
+
+	@Override
+	public void main() {
+		createVariables(-1);
+		for (kCurrent = 0; kCurrent <= settings.n; kCurrent++) {
+			beginStep(kCurrent);
+			processMessages();
+			if (properties.isEmpty()) {
+				break;
+			}
+			checkpoint();
+			createVariables(kCurrent);
+			assertTransitionAndInvariants(kCurrent);
+			if (kCurrent < settings.n) {
+				checkBaseStep(kCurrent);
+				if (properties.isEmpty()) {
+					break;
+				}
+				assertBaseStep(kCurrent);
+			}
+			checkInductiveStep(kCurrent);
+		}
+	}
+
+	/** Base step */
+
+	private void checkBaseStep(int k) {
+		Result result;
+		do {
+			Sexp query = new Cons("=>", INIT, StreamIndex.conjoinEncodings(properties, k));
+			result = solver.query(query);
+
+			if (result instanceof SatResult) {
+				Model model = ((SatResult) result).getModel();
+				List<String> invalid = new ArrayList<>();
+				Iterator<String> iterator = properties.iterator();
+				while (iterator.hasNext()) {
+					String p = iterator.next();
+					StreamIndex si = new StreamIndex(p, k);
+					BooleanValue v = (BooleanValue) model.getValue(si);
+					if (!v.value) {
+						invalid.add(p);
+						iterator.remove();
+					}
+				}
+				sendInvalid(invalid, k, model);
+			} else if (result instanceof UnknownResult) {
+				sendUnknown(properties);
+				properties.clear();
+			}
+		} while (!properties.isEmpty() && result instanceof SatResult);
+
+		sendBaseStep(k);
+	}
+
+	private void assertBaseStep(int k) {
+		// Only true on paths from the initial state
+		Sexp props = StreamIndex.conjoinEncodings(properties, k);
+		solver.assertSexp(new Cons("=>", INIT, props));
+	}
+
+	/** Messages */
+
+	private void sendInvalid(List<String> invalid, int k, Model model) {
+		Itinerary itinerary = director.getInvalidMessageItinerary();
+		director.broadcast(new InvalidMessage(getName(), invalid, k + 1, model, itinerary));
+	}
+
+	private void sendBaseStep(int k) {
+		director.broadcast(new BaseStepMessage(getName(), k + 1, properties));
+	}
+
+	private void sendUnknown(List<String> unknown) {
+		director.broadcast(new UnknownMessage(unknown));
+	}
+
+	@Override
+	protected int getPriority() {
+		return Scheduler.BMC;
+	}
+
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, InvariantMessage.class, UnknownMessage.class,
+				ValidMessage.class);
+	}
+
+	@Override
+	protected void handleMessage(BaseStepMessage bsm) {
+	}
+}
@@ -4,8 +4,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 import jkind.JKindException;
 import jkind.JKindSettings;
@@ -14,6 +19,7 @@ import jkind.Output;
 import jkind.advice.Advice;
 import jkind.advice.AdviceReader;
 import jkind.advice.AdviceWriter;
+import jkind.engines.PropertyTable.Status;
 import jkind.engines.invariant.GraphInvariantGenerationEngine;
 import jkind.engines.messages.BaseStepMessage;
 import jkind.engines.messages.EngineType;
@@ -36,29 +42,42 @@ import jkind.results.Counterexample;
 import jkind.results.Signal;
 import jkind.results.layout.NodeLayout;
 import jkind.slicing.ModelSlicer;
+import jkind.slicing.PropertyClusterer;
 import jkind.solvers.Model;
+import jkind.solvers.SolverStatistics;
 import jkind.translation.Specification;
 import jkind.util.StreamIndex;
 import jkind.util.Util;
 import jkind.writers.ConsoleWriter;
 import jkind.writers.ExcelWriter;
+import jkind.writers.SolverStatisticsWriter;
 import jkind.writers.Writer;
 import jkind.writers.XmlWriter;
 
 public class Director extends MessageHandler {
+	private static final long STOP_TIMEOUT_MILLIS = 5000;
+
 	private final JKindSettings settings;
 	private final Specification spec;
 	private final Writer writer;
 	private final long startTime;
 
-	private final List<String> remainingProperties = new ArrayList<>();
+	private final PropertyTable properties;
 	private final List<String> validProperties = new ArrayList<>();
 	private final List<String> invalidProperties = new ArrayList<>();
-	private int baseStep = 0;
+	private final Map<String, Integer> baseSteps = new HashMap<>();
 	private final Map<String, InductiveCounterexampleMessage> inductiveCounterexamples = new HashMap<>();
 
 	private final List<Engine> engines = new ArrayList<>();
+	private final Map<Class<? extends Message>, List<Engine>> subscribers = new HashMap<>();
+	private final Map<String, List<Engine>> enginesByProperty = new HashMap<>();
+	private final Map<Engine, Integer> undecidedCounts = new HashMap<>();
 	private final List<Thread> threads = new ArrayList<>();
+	private final AtomicInteger runningEngines = new AtomicInteger();
+	private final Scheduler scheduler;
+	private PortfolioController portfolio;
+
+	private List<List<String>> clusters;
 
 	private Advice inputAdvice;
 	private AdviceWriter adviceWriter;
@@ -69,7 +88,8 @@ public class Director extends MessageHandler {
 
 		this.writer = getWriter();
 		this.startTime = System.currentTimeMillis();
-		this.remainingProperties.addAll(spec.node.properties);
+		this.scheduler = new Scheduler(settings.threads);
+		this.properties = new PropertyTable(spec.node.properties);
 
 		if (settings.readAdvice != null) {
 			this.inputAdvice = AdviceReader.read(settings.readAdvice);
@@ -101,9 +121,11 @@ public class Director extends MessageHandler {
 		addShutdownHook();
 		createAndStartEngines();
 
-		while (!timeout() && propertiesRemaining() && someThreadAlive() && !someEngineFailed()) {
-			processMessages();
-			sleep(100);
+		while (!timeout() && propertiesRemaining() && someEngineRunning() && !someEngineFailed()) {
+			processMessagesAndWait(getWaitTime());
+			if (portfolio != null) {
+				portfolio.update();
+			}
 		}
 
 		processMessages();
@@ -113,8 +135,31 @@ public class Director extends MessageHandler {
 		}
 	}
 
+	/**
+	 * Stop any engines still running after run and wait for their threads,
+	 * so that their solvers are stopped. This is only needed when the JVM
+	 * outlives the run, see JKindWorker. Returns false if some engine does
+	 * not stop in time.
+	 */
+	public boolean stopEngines() {
+		engines.forEach(Engine::stop);
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+		try {
+			for (Thread thread : threads) {
+				thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+				if (thread.isAlive()) {
+					return false;
+				}
+			}
+		} catch (InterruptedException e) {
+			return false;
+		}
+		return true;
+	}
+
 	private void postProcessing() {
 		writeUnknowns();
+		writeSolverStatistics();
 		writer.end();
 		writeAdvice();
 		printSummary();
@@ -144,16 +189,36 @@ public class Director extends MessageHandler {
 
 	private void createAndStartEngines() {
 		createEngines();
+		if (settings.portfolio) {
+			portfolio = new PortfolioController(engines);
+		}
 		threads.forEach(Thread::start);
 	}
 
 	private void createEngines() {
-		if (settings.boundedModelChecking) {
-			addEngine(new BmcEngine(spec, settings, this));
+		if (settings.sharedBmcKInduction) {
+			if (settings.clusterBmc || settings.clusterKInduction) {
+				addClusteredEngines("bmc-k-induction", (name, slice) -> new BmcKInductionEngine(
+						name, slice, settings, this));
+			} else {
+				addEngine(new BmcKInductionEngine(spec, settings, this));
+			}
+		} else if (settings.boundedModelChecking) {
+			if (settings.clusterBmc) {
+				addClusteredEngines("bmc", (name, slice) -> new BmcEngine(name, slice, settings,
+						this));
+			} else {
+				addEngine(new BmcEngine(spec, settings, this));
+			}
 		}
 
-		if (settings.kInduction) {
-			addEngine(new KInductionEngine(spec, settings, this));
+		if (settings.kInduction && !settings.sharedBmcKInduction) {
+			if (settings.clusterKInduction) {
+				addClusteredEngines("k-induction", (name, slice) -> new KInductionEngine(name,
+						slice, settings, this));
+			} else {
+				addEngine(new KInductionEngine(spec, settings, this));
+			}
 		}
 
 		if (settings.invariantGeneration) {
@@ -181,9 +246,66 @@ public class Director extends MessageHandler {
 		}
 	}
 
+	/**
+	 * Add one engine per group of properties with overlapping cones of
+	 * influence, each running on its own slice of the specification
+	 */
+	private void addClusteredEngines(String baseName,
+			BiFunction<String, Specification, Engine> constructor) {
+		List<List<String>> clusters = getClusters();
+		for (int i = 0; i < clusters.size(); i++) {
+			String name = clusters.size() == 1 ? baseName : baseName + "-" + (i + 1);
+			addEngine(constructor.apply(name, spec.slice(clusters.get(i))));
+		}
+	}
+
+	private List<List<String>> getClusters() {
+		if (clusters == null) {
+			clusters = PropertyClusterer.cluster(spec.node.properties, spec.dependencyMap);
+		}
+		return clusters;
+	}
+
 	private void addEngine(Engine engine) {
 		engines.add(engine);
-		threads.add(new Thread(engine, engine.getName()));
+		for (Class<? extends Message> type : engine.getSubscriptions()) {
+			subscribers.computeIfAbsent(type, t -> new ArrayList<>()).add(engine);
+		}
+		for (String prop : engine.getAssignedProperties()) {
+			enginesByProperty.computeIfAbsent(prop, p -> new ArrayList<>()).add(engine);
+		}
+		undecidedCounts.put(engine, engine.getAssignedProperties().size());
+		threads.add(new Thread(() -> runEngine(engine), engine.getName()));
+		runningEngines.incrementAndGet();
+	}
+
+	/**
+	 * Stop engines once all of their properties are decided, rather than
+	 * waiting for them to notice after their current solver query
+	 */
+	private void stopFinishedEngines(List<String> decided) {
+		for (String prop : decided) {
+			for (Engine engine : enginesByProperty.getOrDefault(prop, Collections.emptyList())) {
+				int undecided = undecidedCounts.merge(engine, -1, Integer::sum);
+				if (undecided == 0 && !engine.isDone()) {
+					engine.stop();
+				}
+			}
+		}
+	}
+
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	private void runEngine(Engine engine) {
+		try {
+			engine.run();
+		} finally {
+			// Wake up the main loop so it notices the engine is gone
+			runningEngines.decrementAndGet();
+			wakeup();
+		}
 	}
 
 	private static void sleep(int millis) {
@@ -194,16 +316,27 @@ public class Director extends MessageHandler {
 	}
 
 	private boolean timeout() {
+		return getRemainingTime() <= 0;
+	}
+
+	private long getWaitTime() {
+		if (portfolio != null) {
+			return Math.min(getRemainingTime(), portfolio.getTimeToCheckpoint());
+		}
+		return getRemainingTime();
+	}
+
+	private long getRemainingTime() {
 		long timeout = startTime + ((long) settings.timeout) * 1000;
-		return System.currentTimeMillis() > timeout;
+		return timeout - System.currentTimeMillis();
 	}
 
 	private boolean propertiesRemaining() {
-		return !remainingProperties.isEmpty();
+		return properties.hasRemaining();
 	}
 
-	private boolean someThreadAlive() {
-		return threads.stream().anyMatch(Thread::isAlive);
+	private boolean someEngineRunning() {
+		return runningEngines.get() > 0;
 	}
 
 	private boolean someEngineFailed() {
@@ -211,12 +344,49 @@ public class Director extends MessageHandler {
 	}
 
 	private void writeUnknowns() {
-		if (!remainingProperties.isEmpty()) {
-			writer.writeUnknown(remainingProperties, baseStep, convertInductiveCounterexamples(),
+		if (properties.hasRemaining()) {
+			writeUnknown(properties.getRemaining());
+		}
+	}
+
+	private void writeUnknown(List<String> unknown) {
+		// Properties checked by different bmc workers may be true for
+		// different numbers of steps
+		Map<Integer, List<String>> byBaseStep = new TreeMap<>();
+		for (String prop : unknown) {
+			byBaseStep.computeIfAbsent(getBaseStep(prop), k -> new ArrayList<>()).add(prop);
+		}
+
+		Map<String, Counterexample> inductiveCounterexamples = convertInductiveCounterexamples();
+		for (Entry<Integer, List<String>> entry : byBaseStep.entrySet()) {
+			writer.writeUnknown(entry.getValue(), entry.getKey(), inductiveCounterexamples,
 					getRuntime());
 		}
 	}
 
+	private void writeSolverStatistics() {
+		if (!settings.solverStatistics) {
+			return;
+		}
+
+		Map<String, SolverStatistics> statistics = new LinkedHashMap<>();
+		for (Engine engine : engines) {
+			if (engine instanceof SolverBasedEngine) {
+				SolverStatistics engineStatistics = ((SolverBasedEngine) engine).getSolverStatistics();
+				if (engineStatistics != null) {
+					statistics.put(engine.getName(), engineStatistics);
+				}
+			}
+		}
+
+		SolverStatisticsWriter.write(settings.filename + ".stats.json", statistics);
+		writer.writeSolverStatistics(statistics);
+	}
+
+	private int getBaseStep(String prop) {
+		return baseSteps.getOrDefault(prop, 0);
+	}
+
 	private void reportFailures() {
 		for (Engine engine : engines) {
 			if (engine.getThrowable() != null) {
@@ -232,8 +402,9 @@ public class Director extends MessageHandler {
 			Output.println("  JKind " + Main.VERSION);
 			Output.println("==========================================");
 			Output.println();
-			Output.println("There are " + remainingProperties.size() + " properties to be checked.");
-			Output.println("PROPERTIES TO BE CHECKED: " + remainingProperties);
+			Output.println("There are " + spec.node.properties.size()
+					+ " properties to be checked.");
+			Output.println("PROPERTIES TO BE CHECKED: " + spec.node.properties);
 			Output.println();
 		}
 	}
@@ -246,7 +417,9 @@ public class Director extends MessageHandler {
 
 	public void broadcast(Message message) {
 		receiveMessage(message);
-		for (Engine engine : engines) {
+		List<Engine> subscribed = subscribers.getOrDefault(message.getClass(),
+				Collections.emptyList());
+		for (Engine engine : subscribed) {
 			engine.receiveMessage(message);
 		}
 	}
@@ -257,14 +430,17 @@ public class Director extends MessageHandler {
 			return;
 		}
 
-		List<String> newValid = intersect(vm.valid, remainingProperties);
+		List<String> newValid = properties.decide(vm.valid, Status.VALID);
 		if (newValid.isEmpty()) {
 			return;
 		}
 
-		remainingProperties.removeAll(newValid);
 		validProperties.addAll(newValid);
-		inductiveCounterexamples.keySet().removeAll(newValid);
+		stopFinishedEngines(newValid);
+		if (portfolio != null) {
+			portfolio.recordClosed(vm.source, newValid.size());
+		}
+		newValid.forEach(inductiveCounterexamples::remove);
 
 		if (adviceWriter != null) {
 			adviceWriter.addInvariants(vm.invariants);
@@ -274,27 +450,23 @@ public class Director extends MessageHandler {
 		writer.writeValid(newValid, vm.source, vm.k, getRuntime(), invariants);
 	}
 
-	private List<String> intersect(List<String> list1, List<String> list2) {
-		List<String> result = new ArrayList<>();
-		result.addAll(list1);
-		result.retainAll(list2);
-		return result;
-	}
-
 	@Override
 	protected void handleMessage(InvalidMessage im) {
 		if (im.getNextDestination() != null) {
 			return;
 		}
 
-		List<String> newInvalid = intersect(im.invalid, remainingProperties);
+		List<String> newInvalid = properties.decide(im.invalid, Status.INVALID);
 		if (newInvalid.isEmpty()) {
 			return;
 		}
 
-		remainingProperties.removeAll(newInvalid);
 		invalidProperties.addAll(newInvalid);
-		inductiveCounterexamples.keySet().removeAll(newInvalid);
+		stopFinishedEngines(newInvalid);
+		if (portfolio != null) {
+			portfolio.recordClosed(im.source, newInvalid.size());
+		}
+		newInvalid.forEach(inductiveCounterexamples::remove);
 
 		double runtime = getRuntime();
 		for (String invalidProp : newInvalid) {
@@ -306,25 +478,39 @@ public class Director extends MessageHandler {
 
 	@Override
 	protected void handleMessage(InductiveCounterexampleMessage icm) {
-		inductiveCounterexamples.put(icm.property, icm);
+		if (properties.isRemaining(icm.property)) {
+			inductiveCounterexamples.put(icm.property, icm);
+		}
 	}
 
 	@Override
 	protected void handleMessage(UnknownMessage um) {
-		remainingProperties.removeAll(um.unknown);
-		writer.writeUnknown(um.unknown, baseStep, convertInductiveCounterexamples(), getRuntime());
+		List<String> newUnknown = properties.decide(um.unknown, Status.UNKNOWN);
+		if (!newUnknown.isEmpty()) {
+			writeUnknown(newUnknown);
+			stopFinishedEngines(newUnknown);
+		}
 	}
 
 	@Override
 	protected void handleMessage(BaseStepMessage bsm) {
-		baseStep = bsm.step;
-		if (!bsm.properties.isEmpty()) {
-			writer.writeBaseStep(bsm.properties, baseStep);
+		for (String prop : bsm.properties) {
+			baseSteps.put(prop, bsm.step);
+		}
+		List<String> remaining = properties.filterRemaining(bsm.properties);
+		if (!remaining.isEmpty()) {
+			writer.writeBaseStep(remaining, bsm.step);
+		}
+		if (portfolio != null) {
+			portfolio.recordBaseStep(bsm.source);
 		}
 	}
 
 	@Override
 	protected void handleMessage(InvariantMessage im) {
+		if (portfolio != null) {
+			portfolio.recordInvariants(im.source, im.invariants.size());
+		}
 	}
 
 	public Itinerary getValidMessageItinerary() {
@@ -364,10 +550,12 @@ public class Director extends MessageHandler {
 				Output.println("INVALID PROPERTIES: " + invalidProperties);
 				Output.println();
 			}
-			if (!remainingProperties.isEmpty()) {
-				Output.println("UNKNOWN PROPERTIES: " + remainingProperties);
+			if (properties.hasRemaining()) {
+				Output.println("UNKNOWN PROPERTIES: " + properties.getRemaining());
 				Output.println();
 			}
+			Output.println("THREAD USAGE: " + scheduler.getUsage());
+			Output.println();
 		}
 	}
 
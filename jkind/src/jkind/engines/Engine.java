@@ -2,8 +2,11 @@ package jkind.engines;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import jkind.JKindException;
 import jkind.JKindSettings;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.MessageHandler;
 import jkind.translation.Specification;
 
@@ -19,6 +22,15 @@ public abstract class Engine extends MessageHandler implements Runnable {
 	// so we make it volatile
 	protected volatile Throwable throwable;
 
+	// Adjusted by the portfolio controller from the director thread
+	private volatile int penalty = 0;
+	private volatile boolean paused = false;
+	private volatile boolean stopped = false;
+	private volatile boolean done = false;
+
+	// Finished units of work, collected by the portfolio controller
+	private final AtomicInteger completedSteps = new AtomicInteger();
+
 	public Engine(String name, Specification spec, JKindSettings settings, Director director) {
 		this.name = name;
 		this.spec = spec;
@@ -29,17 +41,104 @@ public abstract class Engine extends MessageHandler implements Runnable {
 
 	protected abstract void main();
 
+	/**
+	 * The message types this engine acts on. The director only delivers
+	 * messages of these types to the engine.
+	 */
+	protected abstract List<Class<? extends Message>> getSubscriptions();
+
 	@Override
 	public void run() {
 		try {
 			main();
+		} catch (StopException e) {
+			// Stopped by the portfolio controller
 		} catch (Throwable t) {
-			throwable = t;
+			// Stopping may interrupt the solver mid-query, so errors which
+			// follow are expected
+			if (!stopped) {
+				throwable = t;
+			}
 		} finally {
+			done = true;
 			stopReceivingMessages();
 		}
 	}
 
+	public boolean isDone() {
+		return done;
+	}
+
+	/** The properties this engine was created to check */
+	public List<String> getAssignedProperties() {
+		return spec.node.properties;
+	}
+
+	/** Added to the scheduling priority, so higher penalties run less often */
+	public int getPenalty() {
+		return penalty;
+	}
+
+	public void setPenalty(int penalty) {
+		this.penalty = penalty;
+	}
+
+	/** Record a finished unit of work as progress for the portfolio controller */
+	protected void stepCompleted() {
+		completedSteps.incrementAndGet();
+	}
+
+	/** The number of units of work finished since the previous call */
+	public int takeCompletedSteps() {
+		return completedSteps.getAndSet(0);
+	}
+
+	public synchronized void pause() {
+		paused = true;
+	}
+
+	public synchronized void resume() {
+		paused = false;
+		notifyAll();
+	}
+
+	/**
+	 * Stop this engine as soon as possible. Called by the director once all
+	 * assigned properties are decided, and by the portfolio controller.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		notifyAll();
+		// Unblock processMessagesAndWaitUntil
+		wakeup();
+	}
+
+	@Override
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/** Block until this engine is resumed or stopped */
+	protected synchronized void awaitResume() {
+		try {
+			while (paused && !stopped) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			throw new JKindException("Interrupted while paused", e);
+		}
+	}
+
+	protected void checkStopped() {
+		if (stopped) {
+			throw new StopException();
+		}
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -1,5 +1,8 @@
 package jkind.engines;
 
+import java.util.Arrays;
+import java.util.List;
+
 import jkind.JKindSettings;
 import jkind.engines.messages.BaseStepMessage;
 import jkind.engines.messages.EngineType;
@@ -7,6 +10,7 @@ import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
 import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
 import jkind.interval.ModelGeneralizer;
@@ -45,6 +49,11 @@ public class IntervalGeneralizationEngine extends Engine {
 		director.broadcast(new InvalidMessage(im.source, property, im.length, model, itinerary));
 	}
 
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, UnknownMessage.class, ValidMessage.class);
+	}
+
 	@Override
 	protected void handleMessage(BaseStepMessage bsm) {
 	}
@@ -1,6 +1,7 @@
 package jkind.engines;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -15,6 +16,7 @@ import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
 import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
 import jkind.lustre.Expr;
@@ -192,6 +194,16 @@ public class InvariantReductionEngine extends SolverBasedEngine {
 		director.broadcast(new ValidMessage(vm.source, valid, k, reduced, itinerary));
 	}
 
+	@Override
+	protected int getPriority() {
+		return Scheduler.POST_PROCESSING;
+	}
+
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, UnknownMessage.class, ValidMessage.class);
+	}
+
 	@Override
 	protected void handleMessage(BaseStepMessage bsm) {
 	}
@@ -1,53 +1,42 @@
 package jkind.engines;
 
-import static java.util.stream.Collectors.toList;
-
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jkind.JKindSettings;
-import jkind.engines.invariant.InvariantSet;
 import jkind.engines.messages.BaseStepMessage;
-import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
-import jkind.engines.messages.Itinerary;
 import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
-import jkind.lustre.Expr;
-import jkind.lustre.IdExpr;
-import jkind.lustre.values.BooleanValue;
-import jkind.sexp.Cons;
-import jkind.sexp.Sexp;
-import jkind.solvers.Model;
-import jkind.solvers.Result;
-import jkind.solvers.SatResult;
-import jkind.solvers.UnknownResult;
-import jkind.solvers.UnsatResult;
 import jkind.translation.Specification;
-import jkind.util.SexpUtil;
-import jkind.util.StreamIndex;
 
-public class KInductionEngine extends SolverBasedEngine {
-	private int kCurrent = 0;
-	private int kLimit = 0;
-	private InvariantSet invariants = new InvariantSet();
+public class KInductionEngine extends AbstractKInductionEngine {
+	private final Map<String, Integer> baseSteps = new HashMap<>();
 
 	public KInductionEngine(Specification spec, JKindSettings settings, Director director) {
-		super("k-induction", spec, settings, director);
+		this("k-induction", spec, settings, director);
+	}
+
+	public KInductionEngine(String name, Specification spec, JKindSettings settings,
+			Director director) {
+		super(name, spec, settings, director);
 	}
 
 	@Override
 	public void main() {
 		createVariables(-1);
 		for (kCurrent = 0; kCurrent <= settings.n; kCurrent++) {
-			comment("K = " + kCurrent);
+			beginStep(kCurrent);
 			processMessagesAndWait();
+			checkpoint();
 			createVariables(kCurrent);
 			assertTransitionAndInvariants(kCurrent);
-			checkProperties(kCurrent);
+			checkInductiveStep(kCurrent);
+			stepCompleted();
 			if (properties.isEmpty()) {
 				break;
 			}
@@ -55,117 +44,37 @@ public class KInductionEngine extends SolverBasedEngine {
 	}
 
 	private void processMessagesAndWait() {
-		processMessagesAndWaitUntil(() -> kCurrent <= kLimit);
-	}
-
-	private void checkProperties(int k) {
-		List<String> possiblyValid = new ArrayList<>(properties);
-
-		while (!possiblyValid.isEmpty()) {
-			Result result = solver.query(getInductiveQuery(k, possiblyValid));
-
-			if (result instanceof SatResult || result instanceof UnknownResult) {
-				Model model = getModel(result);
-				Iterator<String> iterator = possiblyValid.iterator();
-				while (iterator.hasNext()) {
-					String p = iterator.next();
-					StreamIndex si = new StreamIndex(p, k);
-					BooleanValue v = (BooleanValue) model.getValue(si);
-					if (!v.value) {
-						sendInductiveCounterexample(p, k + 1, model);
-						iterator.remove();
-					}
-				}
-			} else if (result instanceof UnsatResult) {
-				properties.removeAll(possiblyValid);
-				addPropertiesAsInvariants(k, possiblyValid);
-				sendValid(possiblyValid, k);
-				return;
-			}
-		}
-	}
-
-	private Model getModel(Result result) {
-		if (result instanceof SatResult) {
-			return ((SatResult) result).getModel();
-		} else if (result instanceof UnknownResult) {
-			return ((UnknownResult) result).getModel();
-		} else {
-			throw new IllegalArgumentException();
+		processMessagesAndWaitUntil(() -> kCurrent <= getBaseStep());
+	}
+
+	/**
+	 * The number of steps for which all remaining properties are known to
+	 * hold. Properties may be checked by different bmc workers, so each one
+	 * is tracked separately.
+	 */
+	private int getBaseStep() {
+		int min = Integer.MAX_VALUE;
+		for (String prop : properties) {
+			min = Math.min(min, baseSteps.getOrDefault(prop, 0));
 		}
-	}
-
-	private void addPropertiesAsInvariants(int k, List<String> valid) {
-		List<Expr> newInvariants = valid.stream().map(IdExpr::new).collect(toList());
-		invariants.addAll(newInvariants);
-		assertNewInvariants(newInvariants, k);
-	}
-
-	private void assertNewInvariants(List<Expr> invariants, int limit) {
-		for (int i = 0; i <= limit; i++) {
-			assertInvariants(invariants, i);
-		}
-	}
-
-	private void assertInvariants(List<Expr> invariants, int i) {
-		solver.assertSexp(SexpUtil.conjoinInvariants(invariants, i));
-	}
-
-	private void assertTransitionAndInvariants(int k) {
-		assertInductiveTransition(k);
-		assertInvariants(invariants.getInvariants(), k);
-	}
-
-	private Sexp getInductiveQuery(int k, List<String> possiblyValid) {
-		List<Sexp> hyps = new ArrayList<>();
-		for (int i = 0; i < k; i++) {
-			hyps.add(StreamIndex.conjoinEncodings(possiblyValid, i));
-		}
-		Sexp conc = StreamIndex.conjoinEncodings(possiblyValid, k);
-
-		return new Cons("=>", SexpUtil.conjoin(hyps), conc);
-	}
-
-	private void sendValid(List<String> valid, int k) {
-		Itinerary itinerary = director.getValidMessageItinerary();
-		Message vm = new ValidMessage(getName(), valid, k, invariants.getInvariants(), itinerary);
-		director.broadcast(vm);
-	}
-
-	private void sendInductiveCounterexample(String p, int length, Model model) {
-		if (settings.inductiveCounterexamples) {
-			director.broadcast(new InductiveCounterexampleMessage(p, length, model));
-		}
-	}
-
-	@Override
-	protected void handleMessage(BaseStepMessage bsm) {
-		kLimit = bsm.step;
-	}
-
-	@Override
-	protected void handleMessage(InductiveCounterexampleMessage icm) {
+		return min;
 	}
 
 	@Override
-	protected void handleMessage(InvalidMessage im) {
-		properties.removeAll(im.invalid);
+	protected int getPriority() {
+		return Scheduler.K_INDUCTION;
 	}
 
 	@Override
-	protected void handleMessage(InvariantMessage im) {
-		invariants.addAll(im.invariants);
-		assertNewInvariants(im.invariants, kCurrent - 1);
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(BaseStepMessage.class, InvalidMessage.class, InvariantMessage.class,
+				UnknownMessage.class, ValidMessage.class);
 	}
 
 	@Override
-	protected void handleMessage(UnknownMessage um) {
-		properties.removeAll(um.unknown);
-	}
-
-	@Override
-	protected void handleMessage(ValidMessage vm) {
-		properties.removeAll(vm.valid);
-		addPropertiesAsInvariants(kCurrent - 1, vm.valid);
+	protected void handleMessage(BaseStepMessage bsm) {
+		for (String prop : bsm.properties) {
+			baseSteps.put(prop, bsm.step);
+		}
 	}
 }
@@ -0,0 +1,145 @@
+package jkind.engines;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jkind.engines.invariant.AbstractInvariantGenerationEngine;
+import jkind.engines.pdr.PdrEngine;
+
+/**
+ * Reallocates threads between proving engines based on their progress. At
+ * each checkpoint, an engine which has not closed properties, sent invariants,
+ * produced base steps which k-induction can use, or finished a k-induction
+ * step since the previous checkpoint is stalled, provided some other engine
+ * did make progress. Stalled engines are deprioritized in the scheduler, then
+ * paused every other checkpoint unless another engine depends on them.
+ * Invariant generation is stopped instead, and its thread given to an
+ * additional PDR subengine.
+ */
+public class PortfolioController {
+	private static final long INTERVAL_MILLIS = 5000;
+	private static final int MAX_PENALTY = 3;
+	private static final int PAUSE_AFTER = 2;
+	private static final int STOP_AFTER = 4;
+
+	private final List<Engine> engines = new ArrayList<>();
+	private final Map<String, Progress> progress = new HashMap<>();
+	private long nextCheckpoint = System.currentTimeMillis() + INTERVAL_MILLIS;
+
+	public PortfolioController(List<Engine> engines) {
+		for (Engine engine : engines) {
+			if (isManaged(engine)) {
+				this.engines.add(engine);
+				progress.put(engine.getName(), new Progress());
+			}
+		}
+	}
+
+	private static boolean isManaged(Engine engine) {
+		return engine instanceof BmcEngine || engine instanceof KInductionEngine
+				|| engine instanceof BmcKInductionEngine
+				|| engine instanceof AbstractInvariantGenerationEngine
+				|| engine instanceof PdrEngine;
+	}
+
+	public void recordBaseStep(String source) {
+		// Base steps are only useful while k-induction can make use of them
+		if (isKInductionRunning()) {
+			record(source, 1);
+		}
+	}
+
+	public void recordInvariants(String source, int count) {
+		record(source, count);
+	}
+
+	public void recordClosed(String source, int count) {
+		record(source, count);
+	}
+
+	private void record(String source, int count) {
+		Progress p = progress.get(source);
+		if (p != null) {
+			p.events += count;
+		}
+	}
+
+	private boolean isKInductionRunning() {
+		return engines.stream().anyMatch(e -> isKInduction(e) && !e.isDone());
+	}
+
+	private static boolean isKInduction(Engine engine) {
+		return engine instanceof KInductionEngine || engine instanceof BmcKInductionEngine;
+	}
+
+	public long getTimeToCheckpoint() {
+		return Math.max(0, nextCheckpoint - System.currentTimeMillis());
+	}
+
+	public void update() {
+		if (getTimeToCheckpoint() == 0) {
+			checkpoint();
+			nextCheckpoint = System.currentTimeMillis() + INTERVAL_MILLIS;
+		}
+	}
+
+	private void checkpoint() {
+		for (Engine engine : engines) {
+			record(engine.getName(), engine.takeCompletedSteps());
+		}
+
+		boolean someProgress = progress.values().stream().anyMatch(p -> p.events > 0);
+		for (Engine engine : engines) {
+			Progress p = progress.get(engine.getName());
+			if (!engine.isDone()) {
+				if (p.events > 0 || !someProgress) {
+					p.stalls = 0;
+					engine.setPenalty(0);
+					engine.resume();
+				} else {
+					p.stalls++;
+					stalled(engine, p.stalls);
+				}
+			}
+			p.events = 0;
+		}
+	}
+
+	private void stalled(Engine engine, int stalls) {
+		engine.setPenalty(Math.min(stalls, MAX_PENALTY));
+
+		if (engine instanceof AbstractInvariantGenerationEngine) {
+			if (stalls >= STOP_AFTER) {
+				engine.stop();
+				addPdrSubengine();
+			}
+		} else if (engine instanceof SolverBasedEngine && stalls >= PAUSE_AFTER
+				&& !isDependedOn(engine)) {
+			if (stalls % 2 == 0) {
+				engine.pause();
+			} else {
+				engine.resume();
+			}
+		}
+	}
+
+	/** Pausing BMC would also hold back k-induction, which waits on its base steps */
+	private boolean isDependedOn(Engine engine) {
+		return engine instanceof BmcEngine && isKInductionRunning();
+	}
+
+	private void addPdrSubengine() {
+		for (Engine engine : engines) {
+			if (engine instanceof PdrEngine && !engine.isDone()) {
+				((PdrEngine) engine).addSubengine();
+			}
+		}
+	}
+
+	private static class Progress {
+		private int events = 0;
+		private int stalls = 0;
+	}
+}
@@ -0,0 +1,81 @@
+package jkind.engines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status of each property, indexed by its position in the specification so
+ * that looking up or changing the status of a property takes constant time
+ */
+public class PropertyTable {
+	public enum Status {
+		REMAINING, VALID, INVALID, UNKNOWN
+	}
+
+	private final List<String> properties;
+	private final Map<String, Integer> indices = new HashMap<>();
+	private final Status[] statuses;
+	private int remaining;
+
+	public PropertyTable(List<String> properties) {
+		this.properties = new ArrayList<>(properties);
+		this.statuses = new Status[properties.size()];
+		for (int i = 0; i < properties.size(); i++) {
+			indices.put(properties.get(i), i);
+		}
+		Arrays.fill(statuses, Status.REMAINING);
+		this.remaining = properties.size();
+	}
+
+	public boolean isRemaining(String prop) {
+		Integer i = indices.get(prop);
+		return i != null && statuses[i] == Status.REMAINING;
+	}
+
+	/**
+	 * Change the status of all remaining properties in props
+	 *
+	 * @return the properties whose status changed, in the order given
+	 */
+	public List<String> decide(List<String> props, Status status) {
+		List<String> changed = new ArrayList<>();
+		for (String prop : props) {
+			Integer i = indices.get(prop);
+			if (i != null && statuses[i] == Status.REMAINING) {
+				statuses[i] = status;
+				remaining--;
+				changed.add(prop);
+			}
+		}
+		return changed;
+	}
+
+	/** The remaining properties among props, in the order given */
+	public List<String> filterRemaining(List<String> props) {
+		List<String> result = new ArrayList<>();
+		for (String prop : props) {
+			if (isRemaining(prop)) {
+				result.add(prop);
+			}
+		}
+		return result;
+	}
+
+	public boolean hasRemaining() {
+		return remaining > 0;
+	}
+
+	/** All remaining properties in specification order, takes linear time */
+	public List<String> getRemaining() {
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < statuses.length; i++) {
+			if (statuses[i] == Status.REMAINING) {
+				result.add(properties.get(i));
+			}
+		}
+		return result;
+	}
+}
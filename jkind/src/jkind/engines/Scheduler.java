@@ -0,0 +1,157 @@
+package jkind.engines;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jkind.JKindException;
+
+/**
+ * Limits the number of solver-backed tasks which compute at the same time.
+ * Tasks wait for a slot in order of priority (lower values first) and then in
+ * order of arrival. Waiting tasks gain priority each time they are passed
+ * over, so low priority tasks still make progress. A limit of zero means
+ * there is no limit, though usage is still tracked.
+ */
+public class Scheduler {
+	public static final int POST_PROCESSING = 0;
+	public static final int BMC = 1;
+	public static final int K_INDUCTION = 2;
+	public static final int INVARIANT_GENERATION = 3;
+	public static final int PDR = 4;
+
+	private final int limit;
+	private final List<Ticket> waiting = new ArrayList<>();
+	private long nextSequence = 0;
+
+	private int active = 0;
+	private int peak = 0;
+	private final long startTime = System.currentTimeMillis();
+	private long lastChange = startTime;
+	private long busyMillis = 0;
+
+	public Scheduler(int limit) {
+		this.limit = limit;
+	}
+
+	public synchronized void acquire(int priority) {
+		Ticket ticket = enqueue(priority);
+		grantFreeSlots();
+		await(ticket);
+	}
+
+	public synchronized void release() {
+		update(-1);
+		grantFreeSlots();
+	}
+
+	/**
+	 * If a task of the same or better priority is waiting, hand the slot held
+	 * by the caller directly to it and wait to get a slot back. Otherwise the
+	 * caller keeps its slot and the waiting tasks age as if passed over, so
+	 * they get their turn eventually. Tasks call this between units of work
+	 * so that a long running task cannot starve the others.
+	 */
+	public synchronized void yield(int priority) {
+		if (waiting.isEmpty()) {
+			return;
+		}
+
+		if (Collections.min(waiting).priority > priority) {
+			age();
+			return;
+		}
+
+		next().granted = true;
+		Ticket ticket = enqueue(priority);
+		notifyAll();
+		await(ticket);
+	}
+
+	private Ticket enqueue(int priority) {
+		Ticket ticket = new Ticket(priority, nextSequence++);
+		waiting.add(ticket);
+		return ticket;
+	}
+
+	private void grantFreeSlots() {
+		while (!waiting.isEmpty() && hasFreeSlot()) {
+			next().granted = true;
+			take();
+		}
+		notifyAll();
+	}
+
+	private Ticket next() {
+		Ticket next = Collections.min(waiting);
+		waiting.remove(next);
+		age();
+		return next;
+	}
+
+	private void age() {
+		for (Ticket ticket : waiting) {
+			ticket.priority--;
+		}
+	}
+
+	private void await(Ticket ticket) {
+		try {
+			while (!ticket.granted) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			if (ticket.granted) {
+				release();
+			} else {
+				waiting.remove(ticket);
+			}
+			throw new JKindException("Interrupted while waiting for a thread", e);
+		}
+	}
+
+	private boolean hasFreeSlot() {
+		return limit == 0 || active < limit;
+	}
+
+	private void take() {
+		update(1);
+		peak = Math.max(peak, active);
+	}
+
+	private void update(int delta) {
+		long now = System.currentTimeMillis();
+		busyMillis += active * (now - lastChange);
+		lastChange = now;
+		active += delta;
+	}
+
+	public synchronized String getUsage() {
+		update(0);
+		double elapsed = (lastChange - startTime) / 1000.0;
+		double busy = busyMillis / 1000.0;
+		double average = elapsed > 0 ? busy / elapsed : 0;
+		String available = limit == 0 ? "unlimited" : Integer.toString(limit);
+		return String.format("peak %d of %s, average %.2f (%.1f thread-seconds in %.1f seconds)",
+				peak, available, average, busy, elapsed);
+	}
+
+	private static class Ticket implements Comparable<Ticket> {
+		private int priority;
+		private final long sequence;
+		private boolean granted = false;
+
+		public Ticket(int priority, long sequence) {
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Ticket other) {
+			if (priority != other.priority) {
+				return Integer.compare(priority, other.priority);
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package jkind.engines;
 
+import java.util.Arrays;
+import java.util.List;
+
 import jkind.JKindException;
 import jkind.JKindSettings;
 import jkind.engines.messages.BaseStepMessage;
@@ -8,6 +11,7 @@ import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
 import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
 import jkind.lustre.VarDecl;
@@ -89,6 +93,16 @@ public class SmoothingEngine extends SolverBasedEngine {
 		director.broadcast(new InvalidMessage(im.source, property, im.length, model, itinerary));
 	}
 
+	@Override
+	protected int getPriority() {
+		return Scheduler.POST_PROCESSING;
+	}
+
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, UnknownMessage.class, ValidMessage.class);
+	}
+
 	@Override
 	protected void handleMessage(BaseStepMessage bsm) {
 	}
@@ -13,11 +13,13 @@ import jkind.sexp.Cons;
 import jkind.sexp.Sexp;
 import jkind.sexp.Symbol;
 import jkind.solvers.Solver;
+import jkind.solvers.SolverStatistics;
 import jkind.solvers.cvc4.Cvc4Solver;
 import jkind.solvers.mathsat.MathSatSolver;
 import jkind.solvers.smtinterpol.SmtInterpolSolver;
 import jkind.solvers.yices.YicesSolver;
 import jkind.solvers.yices2.Yices2Solver;
+import jkind.solvers.z3.Z3NativeSolver;
 import jkind.solvers.z3.Z3Solver;
 import jkind.translation.Lustre2Sexp;
 import jkind.translation.Specification;
@@ -26,7 +28,9 @@ import jkind.util.StreamIndex;
 import jkind.util.Util;
 
 public abstract class SolverBasedEngine extends Engine {
-	protected Solver solver;
+	// Read by the director thread when the engine is stopped
+	protected volatile Solver solver;
+	private volatile SolverStatistics statistics;
 
 	public SolverBasedEngine(String name, Specification spec, JKindSettings settings,
 			Director director) {
@@ -35,6 +39,7 @@ public abstract class SolverBasedEngine extends Engine {
 
 	@Override
 	final public void run() {
+		director.getScheduler().acquire(getSchedulingPriority());
 		try {
 			initializeSolver();
 			super.run();
@@ -43,11 +48,56 @@ public abstract class SolverBasedEngine extends Engine {
 				solver.stop();
 				solver = null;
 			}
+			director.getScheduler().release();
 		}
 	}
 
+	/** Priority of this engine when waiting for a thread, see Scheduler */
+	protected abstract int getPriority();
+
+	private int getSchedulingPriority() {
+		return getPriority() + getPenalty();
+	}
+
+	/**
+	 * Let waiting engines run and honor requests to pause or stop. Engines
+	 * call this between units of work.
+	 */
+	protected void checkpoint() {
+		Scheduler scheduler = director.getScheduler();
+		if (isPaused()) {
+			// Do not hold a thread while paused
+			scheduler.release();
+			awaitResume();
+			scheduler.acquire(getSchedulingPriority());
+		}
+		checkStopped();
+		scheduler.yield(getSchedulingPriority());
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		Solver current = solver;
+		if (current != null) {
+			current.cancel();
+		}
+	}
+
+	@Override
+	protected void beginWaiting() {
+		// Do not hold a thread while idle
+		director.getScheduler().release();
+	}
+
+	@Override
+	protected void endWaiting() {
+		director.getScheduler().acquire(getSchedulingPriority());
+	}
+
 	protected void initializeSolver() {
 		solver = getSolver();
+		statistics = solver.getStatistics();
 		solver.initialize();
 		solver.define(spec.transitionRelation);
 		solver.define(new VarDecl(INIT.str, NamedType.BOOL));
@@ -68,27 +118,51 @@ public abstract class SolverBasedEngine extends Engine {
 			return new MathSatSolver(scratchBase);
 		case SMTINTERPOL:
 			return new SmtInterpolSolver(scratchBase);
+		case Z3_NATIVE:
+			return new Z3NativeSolver(scratchBase);
 		}
 		throw new IllegalArgumentException("Unknown solver: " + settings.solver);
 	}
 
+	/**
+	 * Statistics of this engine's solver, which outlive the solver itself.
+	 * Null if the solver was never started.
+	 */
+	public SolverStatistics getSolverStatistics() {
+		return statistics;
+	}
+
 	/** Utility */
 
 	protected void comment(String str) {
 		solver.comment(str);
 	}
 
+	/** Mark the start of step k in the scratch file and solver statistics */
+	protected void beginStep(int k) {
+		comment("K = " + k);
+		statistics.setStep(k);
+	}
+
 	protected void createVariables(int k) {
 		for (VarDecl vd : getOffsetVarDecls(k)) {
 			solver.define(vd);
 		}
 
+		for (Sexp constraint : getTypeConstraints(k)) {
+			solver.assertSexp(constraint);
+		}
+	}
+
+	protected List<Sexp> getTypeConstraints(int k) {
+		List<Sexp> result = new ArrayList<>();
 		for (VarDecl vd : Util.getVarDecls(spec.node)) {
 			Expr constraint = LustreUtil.typeConstraint(vd.id, vd.type);
 			if (constraint != null) {
-				solver.assertSexp(constraint.accept(new Lustre2Sexp(k)));
+				result.add(constraint.accept(new Lustre2Sexp(k)));
 			}
 		}
+		return result;
 	}
 
 	protected List<VarDecl> getOffsetVarDecls(int k) {
@@ -101,16 +175,24 @@ public abstract class SolverBasedEngine extends Engine {
 	}
 
 	protected void assertBaseTransition(int k) {
-		assertTransition(k, k == 0);
+		solver.assertSexp(getBaseTransition(k));
+	}
+
+	protected Sexp getBaseTransition(int k) {
+		return getTransition(k, Sexp.fromBoolean(k == 0));
 	}
 
 	protected static final Symbol INIT = Lustre2Sexp.INIT;
 
 	protected void assertInductiveTransition(int k) {
+		solver.assertSexp(getInductiveTransition(k));
+	}
+
+	protected Sexp getInductiveTransition(int k) {
 		if (k == 0) {
-			assertTransition(0, INIT);
+			return getTransition(0, INIT);
 		} else {
-			assertTransition(k, false);
+			return getTransition(k, Sexp.fromBoolean(false));
 		}
 	}
 
@@ -1,10 +1,13 @@
 package jkind.engines.invariant;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import jkind.JKindSettings;
 import jkind.engines.Director;
+import jkind.engines.Scheduler;
 import jkind.engines.SolverBasedEngine;
 import jkind.engines.StopException;
 import jkind.engines.messages.BaseStepMessage;
@@ -12,12 +15,14 @@ import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
 import jkind.engines.messages.Itinerary;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
 import jkind.lustre.Expr;
 import jkind.lustre.IdExpr;
 import jkind.sexp.Cons;
 import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
 import jkind.solvers.Model;
 import jkind.solvers.ModelEvaluator;
 import jkind.solvers.Result;
@@ -28,6 +33,16 @@ import jkind.util.SexpUtil;
 
 public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngine {
 	private final InvariantSet provenInvariants = new InvariantSet();
+
+	/*
+	 * The base and inductive steps share one solver context. Their
+	 * assertions are guarded by activation literals and extended as k grows,
+	 * rather than re-asserted inside push and pop for every step.
+	 */
+	private Symbol baseLiteral;
+	private Symbol inductiveLiteral;
+	private int baseDepth = -1;
+	private int inductiveDepth = -1;
 	
 	public AbstractInvariantGenerationEngine(String name, Specification spec,
 			JKindSettings settings, Director director) {
@@ -45,8 +60,11 @@ public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngin
 
 			createVariables(-1);
 			createVariables(0);
+			baseLiteral = solver.createActivationLiteral("base");
+			inductiveLiteral = solver.createActivationLiteral("inductive");
 			for (int k = 1; k <= settings.n; k++) {
-				comment("K = " + k);
+				beginStep(k);
+				checkpoint();
 
 				refineBaseStep(k - 1, invariant);
 				if (invariant.isTrivial()) {
@@ -64,18 +82,18 @@ public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngin
 	protected abstract StructuredInvariant createInitialInvariant();
 
 	private void refineBaseStep(int k, StructuredInvariant invariant) {
-		solver.push();
 		Result result;
 
-		for (int i = 0; i <= k; i++) {
-			assertBaseTransition(i);
+		for (int i = baseDepth + 1; i <= k; i++) {
+			assertGuarded(baseLiteral, getBaseTransition(i));
 		}
+		baseDepth = k;
 
 		do {
 			checkForStop();
 
 			Sexp query = SexpUtil.conjoinInvariants(invariant.toExprs(), k);
-			result = solver.query(query);
+			result = solver.query(Collections.singletonList(baseLiteral), query);
 
 			if (result instanceof SatResult) {
 				Model model = ((SatResult) result).getModel();
@@ -85,24 +103,23 @@ public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngin
 				throw new StopException();
 			}
 		} while (!invariant.isTrivial() && result instanceof SatResult);
-
-		solver.pop();
 	}
 
 	private void refineInductiveStep(int k, StructuredInvariant original) {
-		solver.push();
 		StructuredInvariant invariant = original.copy();
 		Result result;
 
-		for (int i = 0; i <= k; i++) {
-			assertInvariants(provenInvariants, i);
-			assertInductiveTransition(i);
+		for (int i = inductiveDepth + 1; i <= k; i++) {
+			assertInvariants(provenInvariants.getInvariants(), i);
+			assertGuarded(inductiveLiteral, getInductiveTransition(i));
 		}
+		inductiveDepth = k;
 
 		do {
 			checkForStop();
 
-			result = solver.query(getInductiveQuery(k, invariant));
+			result = solver.query(Collections.singletonList(inductiveLiteral),
+					getInductiveQuery(k, invariant));
 
 			if (result instanceof SatResult) {
 				Model model = ((SatResult) result).getModel();
@@ -111,10 +128,11 @@ public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngin
 			}
 		} while (!invariant.isTrivial() && result instanceof SatResult);
 
-		solver.pop();
-
 		List<Expr> newInvariants = invariant.toFinalInvariants();
 		provenInvariants.addAll(newInvariants);
+		for (int i = 0; i <= k; i++) {
+			assertInvariants(newInvariants, i);
+		}
 		sendValidProperties(newInvariants, k);
 		sendInvariants(newInvariants);
 		
@@ -122,11 +140,16 @@ public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngin
 		return;
 	}
 
-	private void assertInvariants(InvariantSet set, int i) {
-		solver.assertSexp(SexpUtil.conjoinInvariants(set.getInvariants(), i));
+	private void assertInvariants(List<Expr> invariants, int i) {
+		assertGuarded(inductiveLiteral, SexpUtil.conjoinInvariants(invariants, i));
+	}
+
+	private void assertGuarded(Symbol literal, Sexp sexp) {
+		solver.assertSexp(new Cons("=>", literal, sexp));
 	}
 
 	private void checkForStop() {
+		checkStopped();
 		processMessages();
 		if (properties.isEmpty()) {
 			throw new StopException();
@@ -171,9 +194,19 @@ public abstract class AbstractInvariantGenerationEngine extends SolverBasedEngin
 			comment("  " + inv);
 		}
 
-		director.broadcast(new InvariantMessage(newInvariants));
+		director.broadcast(new InvariantMessage(getName(), newInvariants));
 	}
 	
+	@Override
+	protected int getPriority() {
+		return Scheduler.INVARIANT_GENERATION;
+	}
+
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, UnknownMessage.class, ValidMessage.class);
+	}
+
 	@Override
 	protected void handleMessage(BaseStepMessage bsm) {
 	}
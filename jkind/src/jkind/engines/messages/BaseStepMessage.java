@@ -4,12 +4,14 @@ import java.util.List;
 
 
 public class BaseStepMessage extends Message {
+	public final String source;
 	public final int step;
 	public final List<String> properties;
 
-	public BaseStepMessage(int step, List<String> properties) {
+	public BaseStepMessage(String source, int step, List<String> properties) {
+		this.source = source;
 		this.step = step;
-		this.properties = properties;
+		this.properties = safeCopy(properties);
 	}
 
 	@Override
@@ -6,14 +6,16 @@ import java.util.List;
 import jkind.lustre.Expr;
 
 public class InvariantMessage extends Message {
+	public final String source;
 	public final List<Expr> invariants;
 
-	public InvariantMessage(List<Expr> invs) {
+	public InvariantMessage(String source, List<Expr> invs) {
+		this.source = source;
 		this.invariants = safeCopy(invs);
 	}
 
-	public InvariantMessage(Expr invariant) {
-		this(Collections.singletonList(invariant));
+	public InvariantMessage(String source, Expr invariant) {
+		this(source, Collections.singletonList(invariant));
 	}
 
 	@Override
@@ -8,11 +8,20 @@ import java.util.function.Supplier;
 import jkind.JKindException;
 
 public abstract class MessageHandler {
-	private BlockingQueue<Message> incoming = new LinkedBlockingQueue<>();
+	private volatile BlockingQueue<Message> incoming = new LinkedBlockingQueue<>();
+
+	/** Carries no information, only used to unblock a waiting handler */
+	private static final Message WAKEUP = new Message() {
+		@Override
+		public void accept(MessageHandler handler) {
+		}
+	};
 
 	public void receiveMessage(Message message) {
-		if (incoming != null) {
-			incoming.add(message);
+		// Read once since another thread may stop us receiving concurrently
+		BlockingQueue<Message> queue = incoming;
+		if (queue != null) {
+			queue.add(message);
 		}
 	}
 
@@ -20,29 +29,78 @@ public abstract class MessageHandler {
 		incoming = null;
 	}
 
+	protected void wakeup() {
+		receiveMessage(WAKEUP);
+	}
+
 	protected void processMessages() {
 		while (!incoming.isEmpty()) {
 			handleMessage(incoming.poll());
 		}
 	}
 
+	/** Whether waiting for messages should end early, see wakeup() */
+	protected boolean isStopped() {
+		return false;
+	}
+
 	protected void handleMessage(Message message) {
 		message.accept(this);
 	}
 
+	/**
+	 * Block until a message arrives, wakeup() is called, or the timeout
+	 * elapses, then process all pending messages
+	 */
+	protected void processMessagesAndWait(long timeoutMillis) {
+		try {
+			Message message = incoming.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+			if (message != null) {
+				handleMessage(message);
+			}
+		} catch (InterruptedException e) {
+			throw new JKindException("Interrupted while waiting for message", e);
+		}
+		processMessages();
+	}
+
+	/**
+	 * Process messages until none are pending and the stopping condition holds,
+	 * or until the handler is stopped. The condition is only re-evaluated when
+	 * a message arrives, so anything it depends on which is changed outside of
+	 * message handling must be followed by a call to wakeup().
+	 */
 	protected void processMessagesAndWaitUntil(Supplier<Boolean> stoppingCondition) {
 		try {
-			while (!incoming.isEmpty() || !stoppingCondition.get()) {
-				Message message = incoming.poll(100, TimeUnit.MILLISECONDS);
-				if (message != null) {
-					handleMessage(message);
-				}
+			while (!isStopped() && (!incoming.isEmpty() || !stoppingCondition.get())) {
+				handleMessage(takeMessage());
 			}
 		} catch (InterruptedException e) {
 			throw new JKindException("Interrupted while waiting for message", e);
 		}
 	}
 
+	private Message takeMessage() throws InterruptedException {
+		Message message = incoming.poll();
+		if (message == null) {
+			beginWaiting();
+			try {
+				message = incoming.take();
+			} finally {
+				endWaiting();
+			}
+		}
+		return message;
+	}
+
+	/** Called before blocking in processMessagesAndWaitUntil() */
+	protected void beginWaiting() {
+	}
+
+	/** Called after blocking in processMessagesAndWaitUntil() */
+	protected void endWaiting() {
+	}
+
 	protected abstract void handleMessage(BaseStepMessage bsm);
 
 	protected abstract void handleMessage(InductiveCounterexampleMessage icm);
@@ -1,30 +1,58 @@
 package jkind.engines.pdr;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import de.uni_freiburg.informatik.ultimate.logic.Script;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.logic.Util;
 
+/**
+ * A conjunction of predicate literals. Besides the literals in order, a cube
+ * keeps the set of their ids in a LiteralIndex. Only cubes sharing an index
+ * may be compared.
+ */
 public class Cube {
+	private final LiteralIndex index;
 	private final List<Term> pLiterals = new ArrayList<>();
+	private final BitSet ids = new BitSet();
 	private Cube next;
 
+	public Cube(LiteralIndex index) {
+		this.index = index;
+	}
+
 	public void addPLiteral(Term term) {
 		pLiterals.add(term);
+		ids.set(index.get(term));
 	}
 
 	public void removePLiteral(Term term) {
 		pLiterals.remove(term);
+		ids.clear(index.get(term));
 	}
 
 	public List<Term> getPLiterals() {
 		return pLiterals;
 	}
 
+	public boolean contains(Term term) {
+		return ids.get(index.get(term));
+	}
+
+	/** The ids of the literals of this cube, which must not be modified */
+	public BitSet getIds() {
+		return ids;
+	}
+
 	public boolean subsumes(Cube other) {
-		return other.pLiterals.containsAll(pLiterals);
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			if (!other.ids.get(id)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public void setNext(Cube next) {
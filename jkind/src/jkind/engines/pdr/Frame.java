@@ -1,45 +1,114 @@
 package jkind.engines.pdr;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
-import de.uni_freiburg.informatik.ultimate.logic.Script;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
-import de.uni_freiburg.informatik.ultimate.logic.Util;
 
+/**
+ * A PDR frame. Its clauses are asserted permanently in the solver, each
+ * guarded by the activation literal of the frame (see PdrSmt).
+ *
+ * Cubes are indexed by literal so that subsumption only looks at cubes which
+ * share literals with the cube in question. Every cube is listed under each
+ * of its literals and watched by its first literal. Cubes must not be changed
+ * once added.
+ */
 public class Frame {
+	private final Term activation;
 	private final Term term;
 	private final Set<Cube> cubes = new HashSet<>();
+	private final Map<Integer, Set<Cube>> occurrences = new HashMap<>();
+	private final Map<Integer, Set<Cube>> watches = new HashMap<>();
 
-	public Frame(Term term) {
+	public Frame(Term activation, Term term) {
+		this.activation = activation;
 		this.term = term;
 	}
 
-	public Frame() {
-		this.term = null;
+	public Frame(Term activation) {
+		this(activation, null);
 	}
 
-	public Term toTerm(Script script) {
-		if (term != null) {
-			return term;
+	public Term getActivation() {
+		return activation;
+	}
+
+	public void add(Cube c) {
+		assert term == null;
+		if (cubes.add(c)) {
+			BitSet ids = c.getIds();
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				occurrences.computeIfAbsent(id, k -> new HashSet<>()).add(c);
+			}
+			watches.computeIfAbsent(ids.nextSetBit(0), k -> new HashSet<>()).add(c);
 		}
+	}
 
-		Term[] terms = new Term[cubes.size()];
-		int i = 0;
-		for (Cube c : cubes) {
-			terms[i] = Util.not(script, c.toTerm(script));
-			i++;
+	public void remove(Cube c) {
+		if (cubes.remove(c)) {
+			BitSet ids = c.getIds();
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				removeFrom(occurrences, id, c);
+			}
+			removeFrom(watches, ids.nextSetBit(0), c);
 		}
-		return Util.and(script, terms);
 	}
 
-	public void add(Cube c) {
-		assert term == null;
-		cubes.add(c);
+	private static void removeFrom(Map<Integer, Set<Cube>> map, int id, Cube c) {
+		Set<Cube> set = map.get(id);
+		set.remove(c);
+		if (set.isEmpty()) {
+			map.remove(id);
+		}
+	}
+
+	/** Does some cube in this frame subsume the given cube */
+	public boolean blocks(Cube cube) {
+		// A subsuming cube has its first literal in the given cube
+		BitSet ids = cube.getIds();
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			for (Cube c : watches.getOrDefault(id, Collections.emptySet())) {
+				if (c.subsumes(cube)) {
+					return true;
+				}
+			}
+		}
+
+		// An empty cube is watched by -1 and subsumes everything
+		return watches.containsKey(-1);
+	}
+
+	/** Remove all cubes subsumed by the given cube */
+	public void removeSubsumedBy(Cube cube) {
+		// Subsumed cubes contain every literal of the given cube, so they are
+		// all found under its least frequent literal
+		Set<Cube> candidates = cubes;
+		BitSet ids = cube.getIds();
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			Set<Cube> occurrence = occurrences.get(id);
+			if (occurrence == null) {
+				return;
+			}
+			if (occurrence.size() < candidates.size()) {
+				candidates = occurrence;
+			}
+		}
+
+		for (Cube c : new ArrayList<>(candidates)) {
+			if (cube.subsumes(c)) {
+				remove(c);
+			}
+		}
 	}
 
 	public Set<Cube> getCubes() {
-		return cubes;
+		return Collections.unmodifiableSet(cubes);
 	}
 
 	public boolean isEmpty() {
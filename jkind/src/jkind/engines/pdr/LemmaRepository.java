@@ -0,0 +1,59 @@
+package jkind.engines.pdr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+
+/**
+ * Invariant cubes found by the PDR subengines of one PdrEngine, shared so that
+ * subengines on overlapping cones need not rediscover them.
+ *
+ * Terms belong to the script of the subengine which published them. They are
+ * only read through their (final) structure and are copied into the script of
+ * the subengine importing them, see PdrSmt.
+ */
+public class LemmaRepository {
+	private static class Entry {
+		private final Subscription source;
+		private final List<Term> pLiterals;
+
+		public Entry(Subscription source, List<Term> pLiterals) {
+			this.source = source;
+			this.pLiterals = pLiterals;
+		}
+	}
+
+	private final List<Entry> invariants = new ArrayList<>();
+
+	public Subscription subscribe() {
+		return new Subscription();
+	}
+
+	/**
+	 * The view of one subengine, which publishes through it and reads what
+	 * others have published since its last read
+	 */
+	public class Subscription {
+		private int read = 0;
+
+		public void publishInvariant(List<Term> pLiterals) {
+			synchronized (LemmaRepository.this) {
+				invariants.add(new Entry(this, new ArrayList<>(pLiterals)));
+			}
+		}
+
+		public List<List<Term>> readInvariants() {
+			synchronized (LemmaRepository.this) {
+				List<List<Term>> result = new ArrayList<>();
+				for (Entry entry : invariants.subList(read, invariants.size())) {
+					if (entry.source != this) {
+						result.add(entry.pLiterals);
+					}
+				}
+				read = invariants.size();
+				return result;
+			}
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package jkind.engines.pdr;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+
+/**
+ * Interns the predicate literals of one PdrSmt as small integers so cubes can
+ * be compared as bit sets
+ */
+public class LiteralIndex {
+	private final Map<Term, Integer> ids = new HashMap<>();
+
+	public int get(Term literal) {
+		return ids.computeIfAbsent(literal, l -> ids.size());
+	}
+}
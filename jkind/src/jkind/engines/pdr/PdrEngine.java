@@ -1,33 +1,48 @@
 package jkind.engines.pdr;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import jkind.JKindSettings;
+import jkind.SolverOption;
 import jkind.engines.Director;
 import jkind.engines.Engine;
+import jkind.engines.Scheduler;
 import jkind.engines.messages.BaseStepMessage;
 import jkind.engines.messages.InductiveCounterexampleMessage;
 import jkind.engines.messages.InvalidMessage;
 import jkind.engines.messages.InvariantMessage;
+import jkind.engines.messages.Message;
 import jkind.engines.messages.UnknownMessage;
 import jkind.engines.messages.ValidMessage;
+import jkind.slicing.Dependency;
 import jkind.translation.Specification;
 
 public class PdrEngine extends Engine {
 	private final ConcurrentMap<String, PdrSubengine> subengines = new ConcurrentHashMap<>();
+	private final LemmaRepository lemmas = new LemmaRepository();
+	private final SolverOption backend;
+	private volatile int maxSubengines;
 	private int scratchCounter = 1;
 
 	public PdrEngine(Specification spec, JKindSettings settings, Director director) {
 		super("pdr", spec, settings, director);
+		this.maxSubengines = settings.pdrMax;
+		this.backend = PdrSmt.getBackend(settings.solver);
 	}
 
 	@Override
 	protected void main() {
 		while (!done()) {
 			processMessagesAndWaitUntil(() -> done() || canSpawnSubengine());
+			checkStopped();
 			if (canSpawnSubengine()) {
 				spawnSubengine();
 			}
@@ -35,27 +50,86 @@ public class PdrEngine extends Engine {
 	}
 
 	private boolean done() {
-		return throwable != null || (properties.isEmpty() && subengines.isEmpty());
+		return throwable != null || isStopped()
+				|| (properties.isEmpty() && subengines.isEmpty());
 	}
 
 	private boolean canSpawnSubengine() {
-		return subengines.size() < settings.pdrMax && !properties.isEmpty();
+		return getSubengineCount() < maxSubengines && !properties.isEmpty();
+	}
+
+	private int getSubengineCount() {
+		// Subengines checking a group of properties appear once per property
+		return new HashSet<>(subengines.values()).size();
+	}
+
+	/** Allow one more subengine to run, using a thread freed up elsewhere */
+	public void addSubengine() {
+		maxSubengines++;
+		wakeup();
+	}
+
+	int getSchedulingPriority() {
+		return Scheduler.PDR + getPenalty();
 	}
 
 	private void spawnSubengine() {
-		String prop = properties.remove(0);
+		List<String> group = settings.pdrGroup ? removeGroup() : Collections
+				.singletonList(properties.remove(0));
 		String scratch = settings.scratch ? getScratchBase() + scratchCounter++ : null;
-		PdrSubengine subengine = new PdrSubengine(prop, spec, scratch, this, director);
-		subengines.put(prop, subengine);
+		PdrSubengine subengine = new PdrSubengine(group, spec, backend, scratch, this, lemmas,
+				director);
+		for (String prop : group) {
+			subengines.put(prop, subengine);
+		}
 		subengine.start();
 	}
 
-	public void reportUnknown(String prop) {
-		subengines.remove(prop);
+	/**
+	 * Remove the next property together with the remaining properties whose
+	 * dependencies, other than the property itself, lie within the cone of
+	 * influence of those already in the group. Checking them together only
+	 * adds their own definitions to the slice.
+	 */
+	private List<String> removeGroup() {
+		String first = properties.remove(0);
+		List<String> group = new ArrayList<>();
+		group.add(first);
+		Set<Dependency> cone = new HashSet<>(spec.dependencyMap.get(first).getSet());
+
+		Iterator<String> iterator = properties.iterator();
+		while (iterator.hasNext()) {
+			String prop = iterator.next();
+			Set<Dependency> deps = new HashSet<>(spec.dependencyMap.get(prop).getSet());
+			deps.remove(new Dependency(prop));
+			if (cone.containsAll(deps)) {
+				group.add(prop);
+				cone.add(new Dependency(prop));
+				iterator.remove();
+			}
+		}
+		return group;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		subengines.values().forEach(PdrSubengine::cancel);
+	}
+
+	public void reportUnknown(List<String> unknown) {
+		unknown.forEach(subengines::remove);
+		wakeup();
 	}
 
 	public void reportThrowable(Throwable throwable) {
 		this.throwable = throwable;
+		wakeup();
+	}
+
+	@Override
+	protected List<Class<? extends Message>> getSubscriptions() {
+		return Arrays.asList(InvalidMessage.class, UnknownMessage.class, ValidMessage.class);
 	}
 
 	@Override
@@ -86,12 +160,19 @@ public class PdrEngine extends Engine {
 	}
 
 	private void cancel(List<String> cancel) {
-		for (String prop : new HashSet<>(subengines.keySet())) {
-			if (cancel.contains(prop)) {
-				PdrSubengine subengine = subengines.remove(prop);
-				if (subengine != null) {
-					subengine.cancel();
-				}
+		Set<PdrSubengine> affected = new HashSet<>();
+		for (String prop : cancel) {
+			PdrSubengine subengine = subengines.remove(prop);
+			if (subengine != null) {
+				affected.add(subengine);
+			}
+		}
+
+		for (PdrSubengine subengine : affected) {
+			if (subengines.containsValue(subengine)) {
+				subengine.retire(cancel);
+			} else {
+				subengine.cancel();
 			}
 		}
 		properties.removeAll(cancel);
@@ -1,12 +1,18 @@
 package jkind.engines.pdr;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import jkind.JKindException;
+import jkind.Output;
+import jkind.SolverOption;
 import jkind.engines.StopException;
 import jkind.lustre.Expr;
 import jkind.lustre.Node;
@@ -14,38 +20,53 @@ import jkind.lustre.Type;
 import jkind.lustre.VarDecl;
 import jkind.lustre.values.Value;
 import jkind.solvers.SimpleModel;
+import jkind.solvers.mathsat.MathSatSolver;
 import jkind.solvers.smtinterpol.ScriptUser;
 import jkind.solvers.smtinterpol.SmtInterpolUtil;
 import jkind.solvers.smtinterpol.Subst;
 import jkind.solvers.smtinterpol.Term2Expr;
+import jkind.solvers.smtlib2.SmtLib2Script;
+import jkind.solvers.smtlib2.SmtLib2Solver;
+import jkind.solvers.z3.Z3Solver;
 import jkind.translation.TransitionRelation;
 import jkind.util.StreamIndex;
 import de.uni_freiburg.informatik.ultimate.logic.Annotation;
 import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
+import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
 import de.uni_freiburg.informatik.ultimate.logic.Logics;
 import de.uni_freiburg.informatik.ultimate.logic.Model;
 import de.uni_freiburg.informatik.ultimate.logic.QuotedObject;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
 import de.uni_freiburg.informatik.ultimate.logic.Sort;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.TerminationRequest;
 
 public class PdrSmt extends ScriptUser {
 	private final List<Frame> F;
 
 	private final List<VarDecl> varDecls;
+	private final Set<String> variableNames = new HashSet<>();
 	private final Map<String, Term[]> variableLists = new HashMap<>();
 	private final Term[] base;
 	private final Term[] baseAbstract;
 	private final Term[] primeAbstract;
 	private final Term[] prime;
 
+	private final Lustre2Term lustre2Term;
 	private final Term I;
-	private final Term P;
+	private Term P;
 
 	private final Set<Term> predicates = new HashSet<>();
+	private final LiteralIndex literalIndex = new LiteralIndex();
 
-	public PdrSmt(Node node, List<Frame> F, String property, String scratchBase) {
-		super(SmtInterpolUtil.getScript(scratchBase));
+	private int frameCount = 0;
+
+	public PdrSmt(Node node, List<Frame> F, List<String> properties, SolverOption backend,
+			String scratchBase, TerminationRequest termination) {
+		super(getScript(backend, scratchBase, termination));
 		this.F = F;
 
 		script.setOption(":produce-interpolants", true);
@@ -54,8 +75,11 @@ public class PdrSmt extends ScriptUser {
 		script.setLogic(Logics.QF_UFLIRA);
 		script.setOption(":verbosity", 2);
 
-		Lustre2Term lustre2Term = new Lustre2Term(script, node);
+		this.lustre2Term = new Lustre2Term(script, node);
 		this.varDecls = lustre2Term.getVariables();
+		for (VarDecl vd : varDecls) {
+			variableNames.add(vd.id);
+		}
 
 		this.base = getVariables("");
 		this.baseAbstract = getVariables("-");
@@ -64,29 +88,108 @@ public class PdrSmt extends ScriptUser {
 		
 		this.I = lustre2Term.getInit();
 		defineTransitionRelation(lustre2Term.getTransition());
-		this.P = lustre2Term.encodeProperty(property);
 
 		script.assertTerm(T(baseAbstract, primeAbstract));
 
 		addPredicates(PredicateCollector.collect(I));
+		setProperties(properties);
+	}
+
+	/**
+	 * The solver to run PDR on. Z3 and MathSAT are used when selected and able
+	 * to compute interpolants, otherwise PDR runs on SMTInterpol in process.
+	 * Running on Z3 or MathSAT is experimental.
+	 */
+	public static SolverOption getBackend(SolverOption solver) {
+		if (solver != SolverOption.Z3 && solver != SolverOption.MATHSAT) {
+			return SolverOption.SMTINTERPOL;
+		}
+
+		SmtLib2Solver probe = null;
+		try {
+			probe = createSolver(solver, null);
+			if (probe.supportsInterpolation()) {
+				Output.warning("PDR support for " + solver + " is experimental");
+				return solver;
+			}
+			Output.warning("PDR using smtinterpol since this version of " + solver
+					+ " does not support interpolation");
+		} catch (JKindException e) {
+			// The other engines report the problem if they use the solver
+			Output.warning("PDR using smtinterpol since " + solver + " could not be started");
+		} finally {
+			if (probe != null) {
+				probe.stop();
+			}
+		}
+		return SolverOption.SMTINTERPOL;
+	}
+
+	private static Script getScript(SolverOption backend, String scratchBase,
+			TerminationRequest termination) {
+		if (backend == SolverOption.SMTINTERPOL) {
+			return SmtInterpolUtil.getScript(scratchBase, termination);
+		}
+		return new SmtLib2Script(createSolver(backend, scratchBase), termination);
+	}
+
+	private static SmtLib2Solver createSolver(SolverOption solver, String scratchBase) {
+		switch (solver) {
+		case Z3:
+			return new Z3Solver(scratchBase);
+		case MATHSAT:
+			return new MathSatSolver(scratchBase);
+		default:
+			throw new IllegalArgumentException("No PDR support for solver: " + solver);
+		}
+	}
+
+	/** Interrupt a solver process, which cannot poll for termination */
+	public void cancel() {
+		if (script instanceof SmtLib2Script) {
+			((SmtLib2Script) script).cancel();
+		}
+	}
+
+	/** Release the solver process, if any */
+	public void stop() {
+		if (script instanceof SmtLib2Script) {
+			script.exit();
+		}
+	}
+
+	/**
+	 * Set the properties being checked. Frames do not depend on the
+	 * properties, so they remain valid when properties are removed.
+	 */
+	public void setProperties(List<String> properties) {
+		List<Term> encoded = new ArrayList<>();
+		for (String property : properties) {
+			encoded.add(lustre2Term.encodeProperty(property));
+		}
+		this.P = and(encoded);
 		addPredicates(PredicateCollector.collect(P));
 	}
 
 	private void defineTransitionRelation(Term transition) {
 		TermVariable[] params = new TermVariable[base.length + prime.length];
 		for (int i = 0; i < base.length; i++) {
-			Term v = base[i];
-			params[i] = script.variable(v.toString(), v.getSort());
+			params[i] = variable(base[i]);
 		}
 		for (int i = 0; i < prime.length; i++) {
-			Term v = prime[i];
-			params[i + base.length] = script.variable(v.toString(), v.getSort());
+			params[i + base.length] = variable(prime[i]);
 		}
 
 		Term body = subst(transition, concat(base, prime), params);
 		script.defineFun(TransitionRelation.T.str, params, script.sort("Bool"), body);
 	}
 
+	private TermVariable variable(Term v) {
+		// The raw name, since the variable is quoted again when printed
+		String name = ((ApplicationTerm) v).getFunction().getName();
+		return script.variable(name, v.getSort());
+	}
+
 	private void addPredicates(Set<Term> otherPredicates) {
 		otherPredicates.removeAll(predicates);
 		predicates.addAll(otherPredicates);
@@ -99,33 +202,45 @@ public class PdrSmt extends ScriptUser {
 	}
 
 	public Cube getBadCube() {
-		return extractCube(checkSat(and(R(depth()), not(P))));
+		if (!checkSat(depth(), not(P))) {
+			return null;
+		}
+		Cube result = extractCube(script.getModel());
+		script.pop(1);
+		return result;
 	}
 
 	private int depth() {
 		return F.size() - 2;
 	}
 
-	private Term R(int k) {
-		List<Term> conjuncts = new ArrayList<>();
+	/**
+	 * Activate R(k), the conjunction of frames k and above, within the current
+	 * push. SMTInterpol has no check-sat-assuming, so the activation literals
+	 * are asserted as units and popped afterwards.
+	 */
+	private void activateR(int k) {
 		for (int i = k; i < F.size(); i++) {
-			conjuncts.add(F.get(i).toTerm(script));
+			script.assertTerm(F.get(i).getActivation());
 		}
-		return and(conjuncts);
 	}
 
-	private Model checkSat(Term assertion) {
+	/**
+	 * Check R(k) and assertion. If satisfiable, the scope is left open so the
+	 * caller can read the model, which an external solver answers only until
+	 * the next command.
+	 */
+	private boolean checkSat(int k, Term assertion) {
 		script.push(1);
+		activateR(k);
 		script.assertTerm(assertion);
 		switch (script.checkSat()) {
 		case UNSAT:
 			script.pop(1);
-			return null;
+			return false;
 
 		case SAT:
-			Model model = script.getModel();
-			script.pop(1);
-			return model;
+			return true;
 
 		default:
 			commentUnknownReason();
@@ -134,13 +249,12 @@ public class PdrSmt extends ScriptUser {
 	}
 
 	private Cube extractCube(Model model) {
-		if (model == null) {
-			return null;
-		}
+		Term[] terms = predicates.toArray(new Term[predicates.size()]);
+		Map<Term, Term> values = model.evaluate(terms);
 
-		Cube result = new Cube();
-		for (Term p : predicates) {
-			result.addPLiteral(isTrue(model.evaluate(p)) ? p : not(p));
+		Cube result = new Cube(literalIndex);
+		for (Term p : terms) {
+			result.addPLiteral(isTrue(values.get(p)) ? p : not(p));
 		}
 		return result;
 	}
@@ -156,7 +270,7 @@ public class PdrSmt extends ScriptUser {
 	public boolean isInitial(Cube cube) {
 		// Given our Lustre translation, a frame is initial if it does not
 		// contain ~init
-		return !cube.getPLiterals().contains(not(I));
+		return !cube.contains(not(I));
 	}
 
 	public enum Option {
@@ -174,9 +288,9 @@ public class PdrSmt extends ScriptUser {
 		}
 
 		for (int i = frame - 1; i < F.size() - 1; i++) {
-			script.assertTerm(name(F.get(i).toTerm(script), "F" + i));
+			script.assertTerm(name(F.get(i).getActivation(), "F" + i));
 		}
-		script.assertTerm(F.get(F.size() - 1).toTerm(script));
+		script.assertTerm(F.get(F.size() - 1).getActivation());
 
 		List<Term> pLiterals = s.getCube().getPLiterals();
 		for (int i = 0; i < pLiterals.size(); i++) {
@@ -229,7 +343,7 @@ public class PdrSmt extends ScriptUser {
 	}
 
 	private Cube getMinimalNonInitialCube(List<Term> pLiterals, Term[] unsatCore) {
-		Cube result = new Cube();
+		Cube result = new Cube(literalIndex);
 		for (Term t : unsatCore) {
 			String name = t.toString();
 			if (name.startsWith("P")) {
@@ -250,14 +364,38 @@ public class PdrSmt extends ScriptUser {
 	}
 
 	public boolean isBlocked(TCube s) {
-		int frame = s.getFrame();
-		Cube cube = s.getCube();
-		Term query = and(cube, R(frame));
-		return checkSat(query) == null;
+		if (checkSat(s.getFrame(), s.getCube().toTerm(script))) {
+			script.pop(1);
+			return false;
+		}
+		return true;
 	}
 
 	public Frame createInitialFrame() {
-		return new Frame(I);
+		Frame frame = new Frame(createActivationLiteral(), I);
+		script.assertTerm(or(not(frame.getActivation()), I));
+		return frame;
+	}
+
+	public Frame createFrame() {
+		return new Frame(createActivationLiteral());
+	}
+
+	private Term createActivationLiteral() {
+		// '%' cannot appear in a Lustre identifier
+		String name = "%F" + frameCount++;
+		script.declareFun(name, new Sort[0], script.sort("Bool"));
+		return script.term(name);
+	}
+
+	/**
+	 * Add a blocked cube to a frame. The clause stays asserted even if the
+	 * cube is later removed from the frame, which is sound since it is then
+	 * subsumed by a clause of the same or a higher frame.
+	 */
+	public void addBlockedCube(Frame frame, Cube cube) {
+		frame.add(cube);
+		script.assertTerm(or(not(frame.getActivation()), not(cube)));
 	}
 
 	public void refine(List<Cube> cubes) {
@@ -279,6 +417,66 @@ public class PdrSmt extends ScriptUser {
 		}
 	}
 
+	/**
+	 * Translate an invariant cube published by another subengine. Returns null
+	 * unless the cube can be expressed over our current predicates.
+	 */
+	public Cube importCube(List<Term> pLiterals) {
+		Cube cube = new Cube(literalIndex);
+		for (Term literal : pLiterals) {
+			if (!inSlice(literal)) {
+				return null;
+			}
+			Term copied = copy(literal);
+			if (!predicates.containsAll(PredicateCollector.collect(copied))) {
+				return null;
+			}
+			cube.addPLiteral(copied);
+		}
+		return cube;
+	}
+
+	private boolean inSlice(Term term) {
+		if (term instanceof ApplicationTerm) {
+			ApplicationTerm at = (ApplicationTerm) term;
+			String name = at.getFunction().getName();
+			if (at.getParameters().length == 0 && !name.equals("true") && !name.equals("false")) {
+				return variableNames.contains(name);
+			}
+			for (Term sub : at.getParameters()) {
+				if (!inSlice(sub)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/** Rebuild a term from another script in our script */
+	private Term copy(Term term) {
+		if (term instanceof ApplicationTerm) {
+			ApplicationTerm at = (ApplicationTerm) term;
+			Term[] params = at.getParameters();
+			Term[] copies = new Term[params.length];
+			for (int i = 0; i < params.length; i++) {
+				copies[i] = copy(params[i]);
+			}
+			FunctionSymbol function = at.getFunction();
+			return script.term(function.getName(), function.getIndices(), null, copies);
+		} else if (term instanceof ConstantTerm) {
+			Object value = ((ConstantTerm) term).getValue();
+			if (value instanceof BigInteger) {
+				return numeral((BigInteger) value);
+			} else if (value instanceof BigDecimal) {
+				return decimal((BigDecimal) value);
+			} else if (value instanceof Rational) {
+				return ((Rational) value).toTerm(script.sort(term.getSort().getName()));
+			}
+		}
+
+		throw new IllegalArgumentException("Unhandled: " + term.getClass().getSimpleName());
+	}
+
 	private Term[] getInterpolants(List<Term> terms) {
 		script.push(1);
 
@@ -298,6 +496,8 @@ public class PdrSmt extends ScriptUser {
 		case SAT:
 			int length = terms.size() - 1;
 			SimpleModel extractedModel = extractModel(script.getModel(), length);
+			// The search may continue with the remaining properties
+			script.pop(1);
 			throw new CounterexampleException(length, extractedModel);
 
 		default:
@@ -307,12 +507,20 @@ public class PdrSmt extends ScriptUser {
 	}
 
 	private SimpleModel extractModel(Model model, int length) {
+		List<Term> terms = new ArrayList<>();
+		for (int i = -1; i < length; i++) {
+			for (VarDecl vd : varDecls) {
+				terms.add(script.term(vd.id + StreamIndex.getSuffix(i)));
+			}
+		}
+		Map<Term, Term> values = model.evaluate(terms.toArray(new Term[terms.size()]));
+
 		SimpleModel result = new SimpleModel();
+		Iterator<Term> iterator = terms.iterator();
 		for (int i = -1; i < length; i++) {
 			for (VarDecl vd : varDecls) {
 				String name = vd.id + StreamIndex.getSuffix(i);
-				Term evaluated = model.evaluate(script.term(name));
-				Value value = SmtInterpolUtil.getValue(evaluated, vd.type);
+				Value value = SmtInterpolUtil.getValue(values.get(iterator.next()), vd.type);
 				result.addValue(name, value);
 			}
 		}
@@ -395,10 +603,6 @@ public class PdrSmt extends ScriptUser {
 		return Subst.apply(script, term, variables, arguments);
 	}
 
-	private Term and(Cube cube, Term... terms) {
-		return and(cube.toTerm(script), and(terms));
-	}
-
 	private Term name(Term term, String name) {
 		return script.annotate(term, new Annotation(":named", name));
 	}
@@ -1,10 +1,15 @@
 package jkind.engines.pdr;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import jkind.JKindException;
+import jkind.SolverOption;
 import jkind.engines.Director;
 import jkind.engines.StopException;
 import jkind.engines.messages.InvalidMessage;
@@ -15,9 +20,11 @@ import jkind.engines.pdr.PdrSmt.Option;
 import jkind.lustre.Expr;
 import jkind.lustre.Node;
 import jkind.lustre.builders.NodeBuilder;
+import jkind.lustre.values.BooleanValue;
 import jkind.slicing.LustreSlicer;
 import jkind.solvers.Model;
 import jkind.translation.Specification;
+import jkind.util.StreamIndex;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 
 /**
@@ -31,67 +38,138 @@ import de.uni_freiburg.informatik.ultimate.logic.Term;
  */
 public class PdrSubengine extends Thread {
 	private final Node node;
-	private final String prop;
+	private final List<String> properties;
+	private final Set<String> retired = ConcurrentHashMap.newKeySet();
 	private final PdrEngine parent;
 	private final Director director;
 
 	private final List<Frame> F = new ArrayList<>();
 	private final PdrSmt Z;
+	private final LemmaRepository.Subscription lemmas;
+	private final List<List<Term>> pendingInvariants = new ArrayList<>();
 
 	private volatile boolean cancel = false;
 
-	public PdrSubengine(String prop, Specification spec, String scratchBase, PdrEngine parent,
-			Director director) {
-		super("pdr-" + prop);
-		this.prop = prop;
-		Node single = new NodeBuilder(spec.node).clearProperties().addProperty(prop).build();
-		this.node = LustreSlicer.slice(single, spec.dependencyMap);
+	/**
+	 * Check a group of properties against a single sequence of frames. The
+	 * conjunction of the remaining properties is checked, and properties are
+	 * removed from the group as they are refuted here or decided elsewhere.
+	 */
+	public PdrSubengine(List<String> properties, Specification spec, SolverOption backend,
+			String scratchBase, PdrEngine parent, LemmaRepository repository, Director director) {
+		super("pdr-" + String.join(",", properties));
+		this.properties = new ArrayList<>(properties);
+		Node group = new NodeBuilder(spec.node).clearProperties().addProperties(properties)
+				.build();
+		this.node = LustreSlicer.slice(group, spec.dependencyMap);
 		this.parent = parent;
 		this.director = director;
 
-		this.Z = new PdrSmt(node, F, prop, scratchBase);
+		this.Z = new PdrSmt(node, F, properties, backend, scratchBase, () -> cancel);
+		this.lemmas = repository.subscribe();
 	}
 
+	/** Stop at the next check, interrupting the solver if it is running */
 	public void cancel() {
 		cancel = true;
+		Z.cancel();
+	}
+
+	/** Stop checking properties which have been decided elsewhere */
+	public void retire(List<String> decided) {
+		retired.addAll(decided);
 	}
 
 	@Override
 	public void run() {
-		Z.comment("Checking property: " + prop);
+		director.getScheduler().acquire(parent.getSchedulingPriority());
+		try {
+			check();
+		} finally {
+			Z.stop();
+			director.getScheduler().release();
+		}
+	}
+
+	private void check() {
+		Z.comment("Checking properties: " + properties);
 
 		// Create F_INF and F[0]
-		F.add(new Frame());
+		F.add(Z.createFrame());
 		addFrame(Z.createInitialFrame());
 
 		try {
-			while (true) {
-				Cube c = Z.getBadCube();
-				if (c != null) {
-					blockCube(new TCube(c, depth()));
-				} else {
-					addFrame(new Frame());
-					Z.comment("Number of frames: " + F.size());
-					List<Expr> invariants = propogateBlockedCubes();
-					if (invariants != null) {
-						sendValidAndInvariants(invariants);
-						return;
-					}
+			while (!properties.isEmpty()) {
+				try {
+					search();
+					return;
+				} catch (CounterexampleException cex) {
+					Z.comment("Found counterexample of length " + cex.getLength());
+					List<String> invalid = getFalsified(cex);
+					sendInvalid(invalid, cex.getLength(), cex.getModel());
+					removeProperties(invalid);
 				}
 			}
-		} catch (CounterexampleException cex) {
-			Z.comment("Found counterexample of length " + cex.getLength());
-			sendInvalid(cex.getLength(), cex.getModel());
-			return;
 		} catch (StopException | OutOfMemoryError e) {
-			parent.reportUnknown(prop);
+			parent.reportUnknown(new ArrayList<>(properties));
 			return;
 		} catch (Throwable t) {
-			parent.reportThrowable(t);
+			if (cancel) {
+				parent.reportUnknown(new ArrayList<>(properties));
+			} else {
+				parent.reportThrowable(t);
+			}
 			return;
 		}
 	}
 
+	private void search() {
+		while (true) {
+			removeProperties(retired);
+			if (properties.isEmpty()) {
+				return;
+			}
+
+			Cube c = Z.getBadCube();
+			if (c != null) {
+				blockCube(new TCube(c, depth()));
+			} else {
+				addFrame(Z.createFrame());
+				Z.comment("Number of frames: " + F.size());
+				// Yield once per frame rather than per proof obligation
+				director.getScheduler().yield(parent.getSchedulingPriority());
+				importInvariants();
+				List<Expr> invariants = propogateBlockedCubes();
+				if (invariants != null) {
+					sendValidAndInvariants(invariants);
+					return;
+				}
+			}
+		}
+	}
+
+	/** The properties which are false in the last step of a counterexample */
+	private List<String> getFalsified(CounterexampleException cex) {
+		List<String> falsified = new ArrayList<>();
+		for (String prop : properties) {
+			StreamIndex si = new StreamIndex(prop, cex.getLength() - 1);
+			if (!((BooleanValue) cex.getModel().getValue(si)).value) {
+				falsified.add(prop);
+			}
+		}
+		if (falsified.isEmpty()) {
+			throw new JKindException("PDR counterexample falsifies no property");
+		}
+		return falsified;
+	}
+
+	private void removeProperties(Collection<String> remove) {
+		if (properties.removeAll(remove) && !properties.isEmpty()) {
+			Z.comment("Checking properties: " + properties);
+			Z.setProperties(properties);
+		}
+	}
+
 	private void blockCube(TCube s0) {
 		PriorityQueue<TCube> Q = new PriorityQueue<>();
 		Q.add(s0);
@@ -138,13 +216,33 @@ public class PdrSubengine extends Thread {
 		}
 	}
 
+	/**
+	 * Take invariants found by other subengines. They are added to F[1] rather
+	 * than F_INF so that they are only propagated to later frames when
+	 * inductive relative to our own frames. Invariants which need predicates
+	 * we do not have yet are kept until a refinement adds them.
+	 */
+	private void importInvariants() {
+		pendingInvariants.addAll(lemmas.readInvariants());
+		Iterator<List<Term>> iterator = pendingInvariants.iterator();
+		while (iterator.hasNext()) {
+			Cube cube = Z.importCube(iterator.next());
+			if (cube != null) {
+				iterator.remove();
+				TCube s = new TCube(cube, 1);
+				if (!isBlocked(s)) {
+					Z.comment("Imported invariant: " + cube);
+					addBlockedCube(s);
+				}
+			}
+		}
+	}
+
 	private boolean isBlocked(TCube s) {
 		// Check syntactic subsumption (faster than SAT):
 		for (int d = s.getFrame(); d < F.size(); d++) {
-			for (Cube c : F.get(d).getCubes()) {
-				if (c.subsumes(s.getCube())) {
-					return true;
-				}
+			if (F.get(d).blocks(s.getCube())) {
+				return true;
 			}
 		}
 
@@ -210,20 +308,16 @@ public class PdrSubengine extends Thread {
 
 		// Remove subsumed clauses:
 		for (int d = 1; d <= k; d++) {
-			Set<Cube> cubes = F.get(d).getCubes();
-			for (Cube c : new ArrayList<>(cubes)) {
-				if (s.getCube().subsumes(c)) {
-					cubes.remove(c);
-				}
-			}
+			F.get(d).removeSubsumedBy(s.getCube());
 		}
 
 		// Store clause
-		F.get(k).add(s.getCube());
+		Z.addBlockedCube(F.get(k), s.getCube());
 		Z.comment("Blocked [" + k + "] : " + s.getCube());
 
 		// Report if invariant
 		if (s.getFrame() == TCube.FRAME_INF) {
+			lemmas.publishInvariant(s.getCube().getPLiterals());
 			Expr invariant = Z.getInvariant(s.getCube());
 			sendInvariant(invariant);
 		}
@@ -241,16 +335,17 @@ public class PdrSubengine extends Thread {
 
 	private void sendValidAndInvariants(List<Expr> invariants) {
 		Itinerary itinerary = director.getValidMessageItinerary();
-		director.broadcast(new ValidMessage(parent.getName(), prop, 1, invariants, itinerary));
-		director.broadcast(new InvariantMessage(invariants));
+		director.broadcast(new ValidMessage(parent.getName(), properties, 1, invariants,
+				itinerary));
+		director.broadcast(new InvariantMessage(parent.getName(), invariants));
 	}
 
-	private void sendInvalid(int length, Model model) {
+	private void sendInvalid(List<String> invalid, int length, Model model) {
 		Itinerary itinerary = director.getInvalidMessageItinerary();
-		director.broadcast(new InvalidMessage(parent.getName(), prop, length, model, itinerary));
+		director.broadcast(new InvalidMessage(parent.getName(), invalid, length, model, itinerary));
 	}
 
 	private void sendInvariant(Expr invariant) {
-		director.broadcast(new InvariantMessage(invariant));
+		director.broadcast(new InvariantMessage(parent.getName(), invariant));
 	}
 }
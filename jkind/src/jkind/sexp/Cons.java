@@ -1,12 +1,18 @@
 package jkind.sexp;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 
 public class Cons extends Sexp {
 	final public Sexp head;
 	final public List<? extends Sexp> args;
 
+	// Computed lazily, zero means not yet computed
+	private int hash;
+
 	public Cons(Sexp head, List<? extends Sexp> args) {
 		this.head = head;
 		this.args = args;
@@ -46,4 +52,38 @@ public class Cons extends Sexp {
 		}
 		sb.append(")");
 	}
+
+	@Override
+	public void write(Writer out, Predicate<Symbol> quote) throws IOException {
+		out.write('(');
+		head.write(out, quote);
+		for (Sexp arg : args) {
+			out.write(' ');
+			arg.write(out, quote);
+		}
+		out.write(')');
+	}
+
+	@Override
+	public int hashCode() {
+		int result = hash;
+		if (result == 0) {
+			result = 31 * head.hashCode() + args.hashCode();
+			hash = result;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Cons)) {
+			return false;
+		}
+		Cons other = (Cons) obj;
+		return hashCode() == other.hashCode() && head.equals(other.head)
+				&& args.equals(other.args);
+	}
 }
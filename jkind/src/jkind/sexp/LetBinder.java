@@ -0,0 +1,128 @@
+package jkind.sexp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites an s-expression so that each compound subterm which occurs more
+ * than once is written a single time under an SMT-LIB let binding. Terms are
+ * compared structurally, so this works on any Sexp, but it is cheapest on
+ * terms built by a SexpFactory where equal subterms are already identical.
+ *
+ * Bindings are grouped so that each let only refers to names bound by
+ * enclosing lets, which keeps the nesting depth proportional to the depth of
+ * the sharing rather than to the number of shared terms.
+ */
+public class LetBinder {
+	private static final String PREFIX = "%share";
+
+	/** Symbols spent on a binding besides the term itself and its uses */
+	private static final int BINDING_COST = 2;
+
+	/** Binding forms whose bodies must not be hoisted out of scope */
+	private static final List<String> BINDERS = Arrays.asList("let", "forall", "exists", "!");
+
+	private final Map<Sexp, Integer> occurrences = new HashMap<>();
+	private final Map<Sexp, Rewrite> rewrites = new HashMap<>();
+	private final List<List<Sexp>> levels = new ArrayList<>();
+	private int bound = 0;
+
+	public static Sexp bind(Sexp sexp) {
+		LetBinder binder = new LetBinder();
+		binder.count(sexp);
+		Rewrite body = binder.rewrite(sexp);
+		if (binder.bound == 0) {
+			return sexp;
+		}
+		return binder.wrap(body.sexp);
+	}
+
+	private void count(Sexp sexp) {
+		if (!(sexp instanceof Cons)) {
+			return;
+		}
+
+		Cons cons = (Cons) sexp;
+		if (occurrences.merge(cons, 1, Integer::sum) > 1 || isBinder(cons)) {
+			return;
+		}
+		count(cons.head);
+		for (Sexp arg : cons.args) {
+			count(arg);
+		}
+	}
+
+	private Rewrite rewrite(Sexp sexp) {
+		if (!(sexp instanceof Cons) || isBinder((Cons) sexp)) {
+			return new Rewrite(sexp, -1, 1);
+		}
+
+		Rewrite result = rewrites.get(sexp);
+		if (result != null) {
+			return result;
+		}
+
+		Cons cons = (Cons) sexp;
+		Rewrite head = rewrite(cons.head);
+		int level = head.level;
+		int weight = head.weight;
+		boolean changed = head.sexp != cons.head;
+		List<Sexp> args = new ArrayList<>(cons.args.size());
+		for (Sexp arg : cons.args) {
+			Rewrite r = rewrite(arg);
+			args.add(r.sexp);
+			level = Math.max(level, r.level);
+			weight += r.weight;
+			changed |= r.sexp != arg;
+		}
+		Sexp term = changed ? new Cons(head.sexp, args) : cons;
+
+		if (isWorthBinding(occurrences.get(cons), weight)) {
+			Symbol name = new Symbol(PREFIX + bound++);
+			level++;
+			if (level == levels.size()) {
+				levels.add(new ArrayList<>());
+			}
+			levels.get(level).add(new Cons(name, term));
+			result = new Rewrite(name, level, 1);
+		} else {
+			result = new Rewrite(term, level, weight);
+		}
+
+		rewrites.put(cons, result);
+		return result;
+	}
+
+	private static boolean isWorthBinding(int uses, int weight) {
+		return uses > 1 && uses * weight > weight + uses + BINDING_COST;
+	}
+
+	private Sexp wrap(Sexp body) {
+		Sexp result = body;
+		for (int i = levels.size() - 1; i >= 0; i--) {
+			result = new Cons("let", new Cons(levels.get(i)), result);
+		}
+		return result;
+	}
+
+	private static boolean isBinder(Cons cons) {
+		return cons.head instanceof Symbol && BINDERS.contains(((Symbol) cons.head).str);
+	}
+
+	private static class Rewrite {
+		final Sexp sexp;
+		// Innermost level of the names referenced by sexp, or -1 if none
+		final int level;
+		// Number of symbols in sexp as written
+		final int weight;
+
+		Rewrite(Sexp sexp, int level, int weight) {
+			this.sexp = sexp;
+			this.level = level;
+			this.weight = weight;
+		}
+	}
+}
@@ -1,10 +1,18 @@
 package jkind.sexp;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigInteger;
-
+import java.util.function.Predicate;
 
 public abstract class Sexp {
 	protected abstract void toBuilder(StringBuilder sb);
+
+	/**
+	 * Write directly to out without building an intermediate string. Symbols
+	 * satisfying quote are surrounded by vertical bars.
+	 */
+	public abstract void write(Writer out, Predicate<Symbol> quote) throws IOException;
 	
 	public static Sexp fromInt(int i) {
 		if (i >= 0) {
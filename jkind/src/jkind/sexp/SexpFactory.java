@@ -0,0 +1,66 @@
+package jkind.sexp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds hash-consed s-expressions: structurally equal terms created by the
+ * same factory are the same object. This keeps a large formula proportional
+ * to its number of distinct subterms and makes shared subterms cheap to find
+ * (see LetBinder).
+ *
+ * A factory is not thread safe. Each translation should use its own.
+ */
+public class SexpFactory {
+	private final Map<Sexp, Sexp> table = new HashMap<>();
+
+	public Symbol symbol(String str) {
+		return (Symbol) intern(new Symbol(str));
+	}
+
+	public Sexp cons(Sexp head, List<? extends Sexp> args) {
+		List<Sexp> interned = new ArrayList<>(args.size());
+		for (Sexp arg : args) {
+			interned.add(intern(arg));
+		}
+		return canonical(new Cons(intern(head), interned));
+	}
+
+	public Sexp cons(Sexp head, Sexp... args) {
+		return cons(head, Arrays.asList(args));
+	}
+
+	public Sexp cons(String head, List<? extends Sexp> args) {
+		return cons(symbol(head), args);
+	}
+
+	public Sexp cons(String head, Sexp... args) {
+		return cons(symbol(head), Arrays.asList(args));
+	}
+
+	/**
+	 * Return the canonical copy of sexp, adding it and all of its subterms to
+	 * the table if they are not already there
+	 */
+	public Sexp intern(Sexp sexp) {
+		Sexp existing = table.get(sexp);
+		if (existing != null) {
+			return existing;
+		}
+
+		if (sexp instanceof Cons) {
+			Cons cons = (Cons) sexp;
+			return cons(cons.head, cons.args);
+		}
+		table.put(sexp, sexp);
+		return sexp;
+	}
+
+	private Sexp canonical(Cons cons) {
+		Sexp existing = table.putIfAbsent(cons, cons);
+		return existing != null ? existing : cons;
+	}
+}
@@ -1,5 +1,8 @@
 package jkind.sexp;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Predicate;
 
 public class Symbol extends Sexp {
 	final public String str;
@@ -18,6 +21,17 @@ public class Symbol extends Sexp {
 		sb.append(str);
 	}
 
+	@Override
+	public void write(Writer out, Predicate<Symbol> quote) throws IOException {
+		if (quote.test(this)) {
+			out.write('|');
+			out.write(str);
+			out.write('|');
+		} else {
+			out.write(str);
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
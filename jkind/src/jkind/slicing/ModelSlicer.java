@@ -1,18 +1,27 @@
 package jkind.slicing;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import jkind.solvers.Model;
 import jkind.solvers.SimpleModel;
 import jkind.util.StreamIndex;
 
 public class ModelSlicer {
 	public static Model slice(Model original, DependencySet keep) {
-		SimpleModel sliced = new SimpleModel();
+		List<String> kept = new ArrayList<>();
 		for (String var : original.getVariableNames()) {
 			StreamIndex si = StreamIndex.decode(var);
 			if (si != null && keep.contains(si.getStream())) {
-				sliced.addValue(si, original.getValue(var));
+				kept.add(var);
 			}
 		}
+
+		original.prefetch(kept);
+		SimpleModel sliced = new SimpleModel();
+		for (String var : kept) {
+			sliced.addValue(var, original.getValue(var));
+		}
 		return sliced;
 	}
 }
@@ -0,0 +1,57 @@
+package jkind.slicing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partition properties into clusters whose cones of influence are disjoint.
+ * Two properties end up in the same cluster if their dependency sets overlap,
+ * either directly or through a chain of other properties.
+ */
+public class PropertyClusterer {
+	public static List<List<String>> cluster(List<String> properties, DependencyMap depMap) {
+		return new PropertyClusterer(properties.size()).partition(properties, depMap);
+	}
+
+	private final int[] parent;
+
+	private PropertyClusterer(int size) {
+		this.parent = new int[size];
+		for (int i = 0; i < size; i++) {
+			parent[i] = i;
+		}
+	}
+
+	private List<List<String>> partition(List<String> properties, DependencyMap depMap) {
+		Map<Dependency, Integer> owner = new HashMap<>();
+		for (int i = 0; i < properties.size(); i++) {
+			for (Dependency dep : depMap.get(properties.get(i))) {
+				Integer j = owner.putIfAbsent(dep, i);
+				if (j != null) {
+					union(i, j);
+				}
+			}
+		}
+
+		Map<Integer, List<String>> clusters = new LinkedHashMap<>();
+		for (int i = 0; i < properties.size(); i++) {
+			clusters.computeIfAbsent(find(i), r -> new ArrayList<>()).add(properties.get(i));
+		}
+		return new ArrayList<>(clusters.values());
+	}
+
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void union(int i, int j) {
+		parent[find(i)] = find(j);
+	}
+}
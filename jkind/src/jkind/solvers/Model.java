@@ -1,6 +1,7 @@
 package jkind.solvers;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,6 +29,13 @@ public abstract class Model {
 	public Value getValue(StreamIndex si) {
 		return getValue(si.getEncoded().str);
 	}
+
+	/**
+	 * Hint that the values of the given variables are about to be read, so
+	 * models that fetch values on demand can do it in one batch
+	 */
+	public void prefetch(Collection<String> names) {
+	}
 	
 	protected Value getDefaultValue(Type type) {
 		switch (Util.getName(type)) {
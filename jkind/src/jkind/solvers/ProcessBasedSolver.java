@@ -4,33 +4,162 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Predicate;
 
 import jkind.JKindException;
+import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
 
 public abstract class ProcessBasedSolver extends Solver {
 	protected final static String DONE = "@DONE";
 
 	protected Process process;
+	private final List<String> command;
+	private boolean cancelled = false;
 	protected BufferedWriter toSolver;
-	protected BufferedReader fromSolver;
+	private BufferedReader fromSolver;
 	protected PrintWriter scratch;
 
+	/*
+	 * Responses the caller is waiting for, in the order they were requested.
+	 * The reader thread fills them in as the solver output arrives.
+	 */
+	private final BlockingQueue<CompletableFuture<Response>> expected = new LinkedBlockingQueue<>();
+	private static final CompletableFuture<Response> STOP_READER = new CompletableFuture<>();
+
 	protected ProcessBasedSolver(String scratchBase, ProcessBuilder processBuilder) {
 		this.scratch = getScratch(scratchBase);
 
 		processBuilder.redirectErrorStream(true);
+		command = processBuilder.command();
 		try {
-			process = processBuilder.start();
+			process = SolverProcessPool.start(processBuilder);
 		} catch (IOException e) {
 			throw new JKindException("Unable to start solver", e);
 		}
 		addShutdownHook();
-		toSolver = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+		toSolver = new BufferedWriter(new OutputStreamWriter(new CountingOutputStream(
+				process.getOutputStream())));
 		fromSolver = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		startReader();
+	}
+
+	/** Solver output up to a done marker */
+	protected static class Response {
+		public final List<String> lines;
+		/** The line with the done marker, or null if the solver terminated */
+		public final String marker;
+		/** When the response was complete, in System.nanoTime */
+		public final long arrival;
+		/** Characters read including line breaks, i.e., bytes of ASCII output */
+		public final long size;
+
+		private Response(List<String> lines, String marker) {
+			this.lines = lines;
+			this.marker = marker;
+			this.arrival = System.nanoTime();
+
+			long size = marker == null ? 0 : marker.length() + 1;
+			for (String line : lines) {
+				size += line.length() + 1;
+			}
+			this.size = size;
+		}
+	}
+
+	private void startReader() {
+		Thread reader = new Thread(this::readResponses, "solver-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Read only when a response is expected, so nothing is read from a
+	 * process after it is returned to the pool
+	 */
+	private void readResponses() {
+		IOException failure = null;
+		try {
+			while (true) {
+				CompletableFuture<Response> response = expected.take();
+				if (response == STOP_READER) {
+					return;
+				}
+
+				if (failure != null) {
+					response.completeExceptionally(failure);
+					continue;
+				}
+
+				try {
+					response.complete(readResponse());
+				} catch (IOException e) {
+					failure = e;
+					response.completeExceptionally(e);
+				}
+			}
+		} catch (InterruptedException e) {
+		}
+	}
+
+	private Response readResponse() throws IOException {
+		List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = fromSolver.readLine()) != null) {
+			if (isDone(line)) {
+				return new Response(lines, line);
+			}
+			lines.add(line);
+		}
+		return new Response(lines, null);
+	}
+
+	protected boolean isDone(String line) {
+		return line.contains(DONE);
+	}
+
+	/**
+	 * Flush pending commands and return the solver output up to the next
+	 * done marker, which the caller must already have asked for. Commands
+	 * which need no response are only buffered until then.
+	 */
+	protected CompletableFuture<Response> expectResponse() throws IOException {
+		CompletableFuture<Response> response = new CompletableFuture<>();
+		expected.add(response);
+		toSolver.flush();
+		return response;
+	}
+
+	/**
+	 * Wait for a response from expectResponse. The response is counted in
+	 * the statistics here rather than on the reader thread, which must not
+	 * touch them.
+	 */
+	protected Response awaitResponse(Future<Response> future) throws IOException {
+		try {
+			Response response = future.get();
+			statistics.received(response.size);
+			return response;
+		} catch (ExecutionException e) {
+			throw (IOException) e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
 	}
 
 	private PrintWriter getScratch(String scratchBase) {
@@ -48,13 +177,24 @@ public abstract class ProcessBasedSolver extends Solver {
 
 	protected abstract String getSolverExtension();
 
+	private final Thread shutdownHook = new Thread("shutdown-hook") {
+		@Override
+		public void run() {
+			ProcessBasedSolver.this.destroy();
+		}
+	};
+
 	private void addShutdownHook() {
-		Runtime.getRuntime().addShutdownHook(new Thread("shutdown-hook") {
-			@Override
-			public void run() {
-				ProcessBasedSolver.this.stop();
-			}
-		});
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/** Solvers come and go in a JVM which runs many jobs, see JKindWorker */
+	private void removeShutdownHook() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// JVM already shutting down
+		}
 	}
 
 	@Override
@@ -64,6 +204,16 @@ public abstract class ProcessBasedSolver extends Solver {
 		 * hook) may try to stop the solver at the same time
 		 */
 
+		if (process != null && !cancelled && SolverProcessPool.isEnabled() && reset()
+				&& SolverProcessPool.release(command, process)) {
+			process = null;
+		}
+		destroy();
+		expected.add(STOP_READER);
+		removeShutdownHook();
+	}
+
+	private synchronized void destroy() {
 		if (process != null) {
 			process.destroy();
 			process = null;
@@ -75,6 +225,38 @@ public abstract class ProcessBasedSolver extends Solver {
 		}
 	}
 
+	/**
+	 * Return the solver process to its initial state so it can be reused by
+	 * another solver. Returns false if this is not supported or failed.
+	 */
+	protected boolean reset() {
+		return false;
+	}
+
+	@Override
+	public synchronized void cancel() {
+		// The solver cannot be interrupted portably, so kill it. The process
+		// is cleaned up later by stop().
+		if (process != null) {
+			cancelled = true;
+			process.destroy();
+		}
+	}
+
+	/**
+	 * Write an s-expression to the solver and the scratch file, quoting
+	 * symbols as it goes rather than building the command as a string. It is
+	 * sent with the next expectResponse.
+	 */
+	protected void write(Sexp sexp, Predicate<Symbol> quote) throws IOException {
+		if (scratch != null) {
+			sexp.write(scratch, quote);
+			scratch.println();
+		}
+		sexp.write(toSolver, quote);
+		toSolver.newLine();
+	}
+
 	public void scratch(String str) {
 		if (scratch != null) {
 			scratch.println(str);
@@ -85,4 +267,23 @@ public abstract class ProcessBasedSolver extends Solver {
 	public void comment(String str) {
 		scratch("; " + str);
 	}
+
+	/** Counts the bytes written to the solver into its statistics */
+	private class CountingOutputStream extends FilterOutputStream {
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			statistics.sent(1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			statistics.sent(len);
+		}
+	}
 }
@@ -0,0 +1,60 @@
+package jkind.solvers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A query which has been sent to the solver without waiting for its result
+ * (see Solver.submitLazyQuery). The solver's response is collected in the
+ * background, while anything which needs the solver again, such as reading
+ * a model, happens on the thread which calls get.
+ */
+public class QueryFuture implements Future<Result> {
+	private final Future<?> response;
+	private final Supplier<Result> finish;
+	private Result result;
+
+	public QueryFuture(Future<?> response, Supplier<Result> finish) {
+		this.response = response;
+		this.finish = finish;
+	}
+
+	public static QueryFuture completed(Result result) {
+		return new QueryFuture(CompletableFuture.completedFuture(result), () -> result);
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// Use Solver.cancel to interrupt the solver
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		return response.isDone();
+	}
+
+	@Override
+	public synchronized Result get() {
+		if (result == null) {
+			result = finish.get();
+		}
+		return result;
+	}
+
+	@Override
+	public Result get(long timeout, TimeUnit unit) throws InterruptedException,
+			ExecutionException, TimeoutException {
+		response.get(timeout, unit);
+		return get();
+	}
+}
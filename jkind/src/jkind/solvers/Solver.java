@@ -1,11 +1,16 @@
 package jkind.solvers;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import jkind.lustre.NamedType;
 import jkind.lustre.Type;
 import jkind.lustre.VarDecl;
+import jkind.sexp.Cons;
 import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
 import jkind.translation.TransitionRelation;
 
 public abstract class Solver {
@@ -16,6 +21,104 @@ public abstract class Solver {
 	public abstract void define(TransitionRelation lambda);
 
 	public abstract Result query(Sexp sexp);
+
+	/**
+	 * Like query, but with the given activation literals assumed true for
+	 * this query only. Solvers without assumption support scope the query
+	 * with push and pop instead.
+	 * 
+	 * An unsat result carries the assumptions needed for the proof as its
+	 * unsat core. Solvers which cannot compute cores report all of them.
+	 */
+	public Result query(List<Symbol> assumptions, Sexp sexp) {
+		push();
+		for (Symbol assumption : assumptions) {
+			assertSexp(assumption);
+		}
+		Result result = query(sexp);
+		pop();
+
+		if (result instanceof UnsatResult) {
+			return new UnsatResult(toLabels(assumptions));
+		}
+		return result;
+	}
+
+	protected static List<Label> toLabels(List<Symbol> symbols) {
+		List<Label> labels = new ArrayList<>();
+		for (Symbol symbol : symbols) {
+			labels.add(new Label(symbol.str));
+		}
+		return labels;
+	}
+
+	private int activationCount = 1;
+
+	/**
+	 * Declare a fresh boolean constant to guard assertions. An assertion of
+	 * (=> literal sexp) only takes part in queries which assume the literal,
+	 * and retire disables it for good. Unlike push and pop, this keeps what
+	 * the solver has learned from the guarded assertions.
+	 * 
+	 * A retired literal cannot be reused, since the solver keeps its
+	 * negation. Each literal stays declared for the life of the solver, along
+	 * with its guarded assertions, so callers should create them sparingly.
+	 */
+	public Symbol createActivationLiteral(String prefix) {
+		Symbol literal = new Symbol(prefix + activationCount++);
+		define(new VarDecl(literal.str, NamedType.BOOL));
+		// Activation literals are not part of the models given to engines
+		varTypes.remove(literal.str);
+		return literal;
+	}
+
+	/** Permanently disable the assertions guarded by an activation literal */
+	public void retire(Symbol literal) {
+		assertSexp(new Cons("not", literal));
+	}
+
+	private final Map<Sexp, Symbol> negationGuards = new HashMap<>();
+
+	/**
+	 * An assumption which holds only when sexp is false, for solvers which
+	 * query under assumptions. A single variable is negated in place. Other
+	 * terms get an activation literal guarding their negation, which is
+	 * shared by all queries of the same term and never retired, so repeated
+	 * queries do not grow the solver. It must not be created inside a push.
+	 */
+	protected Sexp negationAssumption(Sexp sexp) {
+		if (sexp instanceof Symbol && varTypes.containsKey(((Symbol) sexp).str)) {
+			return new Cons("not", sexp);
+		}
+
+		Symbol literal = negationGuards.get(sexp);
+		if (literal == null) {
+			literal = createActivationLiteral("assum");
+			assertSexp(new Cons("=>", literal, new Cons("not", sexp)));
+			negationGuards.put(sexp, literal);
+		}
+		return literal;
+	}
+
+	/**
+	 * Like query, but the model of a satisfiable result may fetch its values
+	 * from the solver on demand. Such a model can only read new values until
+	 * the next call on this solver, so callers must extract what they need
+	 * (e.g., with ModelSlicer) before using the solver again.
+	 */
+	public Result lazyQuery(Sexp sexp) {
+		return query(sexp);
+	}
+
+	/**
+	 * Like lazyQuery, but returns as soon as the query is sent so the caller
+	 * can do other work while the solver runs. Nothing else may be done with
+	 * this solver until the result has been taken from the future. Solvers
+	 * which cannot run in the background answer before returning.
+	 */
+	public QueryFuture submitLazyQuery(Sexp sexp) {
+		return QueryFuture.completed(lazyQuery(sexp));
+	}
 	
 	public abstract void push();
 	public abstract void pop();
@@ -23,5 +126,17 @@ public abstract class Solver {
 	public abstract void comment(String str);
 	public abstract void stop();
 
+	/**
+	 * Interrupt any query in progress. This may be called from another
+	 * thread, and the solver cannot be used after it has been cancelled.
+	 */
+	public abstract void cancel();
+
 	protected final Map<String, Type> varTypes = new HashMap<>();
+
+	protected final SolverStatistics statistics = new SolverStatistics();
+
+	public SolverStatistics getStatistics() {
+		return statistics;
+	}
 }
@@ -0,0 +1,115 @@
+package jkind.solvers;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Idle solver processes which can be handed to new solvers instead of forking
+ * a fresh process. Processes are started ahead of time with prestart, or
+ * returned by a ProcessBasedSolver once it has reset them. Processes are
+ * only returned once the pool is enabled, which JKindWorker does. A single
+ * command line run gains nothing from resetting its solvers on the way out.
+ */
+public class SolverProcessPool {
+	/** Maximum number of idle processes kept for each command */
+	private static final int MAX_IDLE = 8;
+
+	private static final Map<List<String>, Deque<Process>> idle = new HashMap<>();
+	private static volatile boolean enabled = false;
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("solver-pool-shutdown") {
+			@Override
+			public void run() {
+				destroyAll();
+			}
+		});
+	}
+
+	/** Let solvers return their processes for reuse when they stop */
+	public static void enable() {
+		enabled = true;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Take an idle process running the command of processBuilder, or start a
+	 * new one if there is none
+	 */
+	public static Process start(ProcessBuilder processBuilder) throws IOException {
+		Process process = take(processBuilder.command());
+		if (process != null) {
+			return process;
+		}
+		return processBuilder.start();
+	}
+
+	private static synchronized Process take(List<String> command) {
+		Deque<Process> processes = idle.get(command);
+		while (processes != null && !processes.isEmpty()) {
+			Process process = processes.poll();
+			if (process.isAlive()) {
+				return process;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Start processes ahead of time so the next solvers need not wait, until
+	 * count processes are idle
+	 */
+	public static void prestart(ProcessBuilder processBuilder, int count) throws IOException {
+		processBuilder.redirectErrorStream(true);
+		for (int i = countIdle(processBuilder.command()); i < count; i++) {
+			if (!release(processBuilder.command(), processBuilder.start())) {
+				break;
+			}
+		}
+	}
+
+	private static synchronized int countIdle(List<String> command) {
+		Deque<Process> processes = idle.get(command);
+		if (processes == null) {
+			return 0;
+		}
+		processes.removeIf(process -> !process.isAlive());
+		return processes.size();
+	}
+
+	/**
+	 * Offer a process in its initial state for reuse. Returns false if the
+	 * pool is full or the process is dead, in which case the caller still owns
+	 * the process.
+	 */
+	public static synchronized boolean release(List<String> command, Process process) {
+		if (!process.isAlive()) {
+			return false;
+		}
+
+		Deque<Process> processes = idle.computeIfAbsent(new ArrayList<>(command),
+				c -> new ArrayDeque<>());
+		if (processes.size() >= MAX_IDLE) {
+			return false;
+		}
+		processes.add(process);
+		return true;
+	}
+
+	private static synchronized void destroyAll() {
+		for (Deque<Process> processes : idle.values()) {
+			for (Process process : processes) {
+				process.destroy();
+			}
+		}
+		idle.clear();
+	}
+}
@@ -0,0 +1,102 @@
+package jkind.solvers;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counters describing the work done by one solver, kept separately for each
+ * step k of the engine using it. Recording is cheap enough to always be on,
+ * the counters are only written out with -solver_stats.
+ *
+ * Counters are updated by the engine thread and read once the engine is done,
+ * or at shutdown when a slightly stale view is acceptable.
+ */
+public class SolverStatistics {
+	/**
+	 * Check latency histogram buckets. Bucket 0 counts checks under 1ms and
+	 * bucket i counts checks from 2^(i-1)ms up to 2^i ms. The last bucket
+	 * collects everything slower.
+	 */
+	public static final int LATENCY_BUCKETS = 16;
+
+	public static class Step {
+		public final int k;
+		public long bytesSent;
+		public long bytesReceived;
+		public long checks;
+		public long checkNanos;
+		public final long[] latencies = new long[LATENCY_BUCKETS];
+		public long parseNanos;
+		public long models;
+		public long modelValues;
+		public int maxDepth;
+
+		private Step(int k) {
+			this.k = k;
+		}
+	}
+
+	private final Map<Integer, Step> steps = new TreeMap<>();
+	private Step current;
+	private int depth = 0;
+
+	public SolverStatistics() {
+		// Anything before the first step, such as defining the transition
+		// relation, is recorded as step -1
+		setStep(-1);
+	}
+
+	public void setStep(int k) {
+		current = steps.computeIfAbsent(k, Step::new);
+		current.maxDepth = Math.max(current.maxDepth, depth);
+	}
+
+	public Collection<Step> getSteps() {
+		return steps.values();
+	}
+
+	public void sent(long bytes) {
+		current.bytesSent += bytes;
+	}
+
+	public void received(long bytes) {
+		current.bytesReceived += bytes;
+	}
+
+	public void check(long nanos) {
+		current.checks++;
+		current.checkNanos += nanos;
+		current.latencies[getBucket(nanos)]++;
+	}
+
+	private static int getBucket(long nanos) {
+		long millis = nanos / 1_000_000;
+		int bucket = 64 - Long.numberOfLeadingZeros(millis);
+		return Math.min(bucket, LATENCY_BUCKETS - 1);
+	}
+
+	/** Time spent reading and parsing solver output other than results */
+	public void parse(long nanos) {
+		current.parseNanos += nanos;
+	}
+
+	public void model(int values) {
+		current.models++;
+		current.modelValues += values;
+	}
+
+	/** Values fetched later for a model which has already been counted */
+	public void values(int values) {
+		current.modelValues += values;
+	}
+
+	public void push() {
+		depth++;
+		current.maxDepth = Math.max(current.maxDepth, depth);
+	}
+
+	public void pop() {
+		depth--;
+	}
+}
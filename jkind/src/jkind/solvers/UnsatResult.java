@@ -5,7 +5,14 @@ import java.util.List;
 
 public class UnsatResult extends Result {
 	final private List<Label> unsatCore = new ArrayList<>();
-	
+
+	public UnsatResult() {
+	}
+
+	public UnsatResult(List<Label> unsatCore) {
+		this.unsatCore.addAll(unsatCore);
+	}
+
 	public List<Label> getUnsatCore() {
 		return unsatCore;
 	}
@@ -1,12 +1,20 @@
 package jkind.solvers.cvc4;
 
 import java.io.File;
+import java.util.List;
 
+import jkind.sexp.Symbol;
 import jkind.solvers.smtlib2.SmtLib2Solver;
 
 public class Cvc4Solver extends SmtLib2Solver {
+	private boolean assumptions = false;
+
 	public Cvc4Solver(String scratchBase) {
-		super(scratchBase, new ProcessBuilder(getCVC4(), "--lang", "smt"), "CVC4");
+		super(scratchBase, getProcessBuilder(), "CVC4");
+	}
+
+	public static ProcessBuilder getProcessBuilder() {
+		return new ProcessBuilder(getCVC4(), "--lang", "smt");
 	}
 
 	private static String getCVC4() {
@@ -19,9 +27,26 @@ public class Cvc4Solver extends SmtLib2Solver {
 
 	@Override
 	public void initialize() {
+		// check-sat-assuming and get-unsat-assumptions were added in CVC4 1.6
+		assumptions = isVersionAtLeast(1, 6);
 		send("(set-option :produce-models true)");
 		send("(set-option :incremental true)");
+		if (assumptions) {
+			send("(set-option :produce-unsat-assumptions true)");
+		}
 		send("(set-option :rewrite-divk true)");
 		send("(set-logic AUFLIRA)");
 	}
+
+	@Override
+	protected boolean supportsAssumptions() {
+		return assumptions;
+	}
+
+	@Override
+	protected List<Symbol> getUnsatAssumptions(List<Symbol> assumptions) {
+		send("(get-unsat-assumptions)");
+		send("(echo \"" + DONE + "\")");
+		return readUnsatAssumptions(assumptions);
+	}
 }
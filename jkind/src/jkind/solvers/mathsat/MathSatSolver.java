@@ -1,19 +1,19 @@
 package jkind.solvers.mathsat;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import jkind.JKindException;
-import jkind.lustre.NamedType;
-import jkind.lustre.VarDecl;
 import jkind.lustre.parsing.StdoutErrorListener;
 import jkind.sexp.Cons;
 import jkind.sexp.Sexp;
 import jkind.sexp.Symbol;
 import jkind.solvers.Model;
+import jkind.solvers.QueryFuture;
 import jkind.solvers.Result;
-import jkind.solvers.SatResult;
-import jkind.solvers.UnsatResult;
 import jkind.solvers.mathsat.MathSatParser.ModelContext;
+import jkind.solvers.smtlib2.SexpParser;
 import jkind.solvers.smtlib2.SmtLib2Solver;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
@@ -22,7 +22,11 @@ import org.antlr.v4.runtime.CommonTokenStream;
 
 public class MathSatSolver extends SmtLib2Solver {
 	public MathSatSolver(String scratchBase) {
-		super(scratchBase, new ProcessBuilder(getMathSat()), "MathSAT");
+		super(scratchBase, getProcessBuilder(), "MathSAT");
+	}
+
+	public static ProcessBuilder getProcessBuilder() {
+		return new ProcessBuilder(getMathSat());
 	}
 
 	private static String getMathSat() {
@@ -38,29 +42,58 @@ public class MathSatSolver extends SmtLib2Solver {
 		send("(set-option :produce-models true)");
 	}
 
-	private int assumCount = 1;
+	@Override
+	protected boolean supportsAssumptions() {
+		return true;
+	}
 
 	@Override
-	public Result query(Sexp sexp) {
-		Result result = null;
-
-		Symbol assum = new Symbol("assum" + assumCount++);
-		define(new VarDecl(assum.str, NamedType.BOOL));
-		send(new Cons("assert", new Cons("=>", assum, new Cons("not", sexp))));
-		send(new Cons("check-sat-assumptions", new Cons(assum)));
-		send("(echo \"" + DONE + "\")");
-		String status = readFromSolver();
-		if (isSat(status)) {
-			send("(get-model)");
+	protected Sexp checkSatAssuming(List<Sexp> assumptions) {
+		return new Cons("check-sat-assumptions", new Cons(new ArrayList<>(assumptions)));
+	}
+
+	@Override
+	public boolean supportsInterpolation() {
+		return true;
+	}
+
+	@Override
+	protected String name(String term, String name) {
+		// Each named assertion is also its own interpolation group
+		return "(! " + term + " :named " + name + " :interpolation-group " + name + ")";
+	}
+
+	@Override
+	protected List<Sexp> getInterpolants(List<String> names) {
+		// MathSAT computes one interpolant at a time, for a set of groups
+		List<Sexp> interpolants = new ArrayList<>();
+		for (int i = 1; i < names.size(); i++) {
+			send("(get-interpolant (" + String.join(" ", names.subList(0, i)) + "))");
 			send("(echo \"" + DONE + "\")");
-			result = new SatResult(parseModel(readFromSolver()));
-		} else if (isUnsat(status)) {
-			result = new UnsatResult();
-		} else {
-			throw new IllegalArgumentException("Unknown result: " + result);
+			List<Sexp> response = SexpParser.parse(readFromSolver());
+			if (response.size() != 1) {
+				throw new JKindException("Error parsing " + name + " interpolant");
+			}
+			interpolants.add(response.get(0));
 		}
+		return interpolants;
+	}
+
+	@Override
+	protected Model readModel() {
+		return parseModel(readFromSolver());
+	}
 
-		return result;
+	@Override
+	public Result lazyQuery(Sexp sexp) {
+		// MathSAT output has its own grammar, so models are read eagerly
+		return query(sexp);
+	}
+
+	@Override
+	public QueryFuture submitLazyQuery(Sexp sexp) {
+		// Not sent in the background, since the model is read eagerly
+		return QueryFuture.completed(lazyQuery(sexp));
 	}
 
 	@Override
@@ -20,15 +20,17 @@ import jkind.translation.TransitionRelation;
 import de.uni_freiburg.informatik.ultimate.logic.Logics;
 import de.uni_freiburg.informatik.ultimate.logic.QuotedObject;
 import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
 import de.uni_freiburg.informatik.ultimate.logic.Sort;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
 
 public class SmtInterpolSolver extends Solver {
 	private final Script script;
+	private volatile boolean cancelled = false;
 
 	public SmtInterpolSolver(String scratchBase) {
-		this.script = SmtInterpolUtil.getScript(scratchBase);
+		this.script = SmtInterpolUtil.getScript(scratchBase, () -> cancelled);
 	}
 
 	@Override
@@ -70,7 +72,11 @@ public class SmtInterpolSolver extends Solver {
 		push();
 		assertSexp(new Cons("not", sexp));
 
-		switch (script.checkSat()) {
+		long start = System.nanoTime();
+		LBool status = script.checkSat();
+		statistics.check(System.nanoTime() - start);
+
+		switch (status) {
 		case SAT:
 			model = extractModel(script.getModel());
 			pop();
@@ -90,6 +96,7 @@ public class SmtInterpolSolver extends Solver {
 	}
 
 	private Model extractModel(de.uni_freiburg.informatik.ultimate.logic.Model model) {
+		long start = System.nanoTime();
 		SimpleModel result = new SimpleModel();
 		for (Entry<String, Type> entry : varTypes.entrySet()) {
 			String name = entry.getKey();
@@ -98,17 +105,21 @@ public class SmtInterpolSolver extends Solver {
 			Value value = SmtInterpolUtil.getValue(evaluated, type);
 			result.addValue(name, value);
 		}
+		statistics.parse(System.nanoTime() - start);
+		statistics.model(varTypes.size());
 		return result;
 	}
 
 	@Override
 	public void push() {
 		script.push(1);
+		statistics.push();
 	}
 
 	@Override
 	public void pop() {
 		script.pop(1);
+		statistics.pop();
 	}
 
 	@Override
@@ -120,6 +131,12 @@ public class SmtInterpolSolver extends Solver {
 	public void stop() {
 	}
 
+	@Override
+	public void cancel() {
+		// SMTInterpol polls this and answers unknown to the check in progress
+		cancelled = true;
+	}
+
 	private Sort getSort(Type type) {
 		return SmtInterpolUtil.getSort(script, type);
 	}
@@ -52,7 +52,7 @@ public class ModelExtractor {
 		}
 	}
 
-	private static String parse(String string) {
+	static String parse(String string) {
 		if (string.contains(".")) {
 			BigDecimal d = new BigDecimal(string);
 			BigInteger numerator = d.unscaledValue();
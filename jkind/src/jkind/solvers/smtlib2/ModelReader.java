@@ -0,0 +1,161 @@
+package jkind.solvers.smtlib2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import jkind.lustre.Type;
+import jkind.sexp.Cons;
+import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
+
+/**
+ * Single pass reader for SMT-LIB models of the form accepted by SmtLib2.g4,
+ * and for get-value responses. Lines are fed in as they arrive from the
+ * solver and each define-fun or value pair is added to the model as soon as
+ * it is closed, so no token stream or parse tree is built.
+ *
+ * Anything outside the expected shape marks the reader as failed, in which
+ * case the caller should fall back to the ANTLR parser.
+ */
+public class ModelReader {
+	private static final Symbol EMPTY = new Symbol("()");
+	private static final List<String> TYPES = Arrays.asList("Bool", "Int", "Real");
+
+	private final SmtLib2Model model;
+	private final Deque<List<Sexp>> stack = new ArrayDeque<>();
+	private boolean finished = false;
+	private boolean failed = false;
+
+	public ModelReader(Map<String, Type> varTypes) {
+		this(new SmtLib2Model(varTypes));
+	}
+
+	/** Read into an existing model, adding to the values it already has */
+	public ModelReader(SmtLib2Model model) {
+		this.model = model;
+	}
+
+	/**
+	 * @return the model, or null if the input was not a complete model of the
+	 *         expected shape
+	 */
+	public SmtLib2Model getModel() {
+		return finished && !failed ? model : null;
+	}
+
+	public void read(String line) {
+		int i = 0;
+		int n = line.length();
+		while (i < n && !failed) {
+			char c = line.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '(') {
+				open();
+				i++;
+			} else if (c == ')') {
+				close();
+				i++;
+			} else if (c == '|') {
+				int end = line.indexOf('|', i + 1);
+				if (end < 0) {
+					failed = true;
+					return;
+				}
+				atom(line.substring(i, end + 1));
+				i = end + 1;
+			} else {
+				int start = i;
+				while (i < n && !isDelimiter(line.charAt(i))) {
+					i++;
+				}
+				atom(line.substring(start, i));
+			}
+		}
+	}
+
+	private static boolean isDelimiter(char c) {
+		return c == '(' || c == ')' || c == '|' || Character.isWhitespace(c);
+	}
+
+	private void open() {
+		if (finished) {
+			failed = true;
+		} else {
+			stack.push(new ArrayList<>());
+		}
+	}
+
+	private void close() {
+		if (stack.isEmpty()) {
+			failed = true;
+			return;
+		}
+
+		List<Sexp> list = stack.pop();
+		switch (stack.size()) {
+		case 0:
+			// Only define-funs and value pairs remain, since those are
+			// removed as they close
+			if (!list.isEmpty() && !list.equals(Arrays.asList(new Symbol("model")))) {
+				failed = true;
+			}
+			finished = true;
+			break;
+
+		case 1:
+			entry(list);
+			break;
+
+		default:
+			stack.peek().add(list.isEmpty() ? EMPTY : new Cons(list));
+			break;
+		}
+	}
+
+	private void entry(List<Sexp> list) {
+		if (list.size() == 2 && list.get(0) instanceof Symbol) {
+			// Value pair from get-value
+			model.addValue(Quoting.unquote(((Symbol) list.get(0)).str), list.get(1));
+			return;
+		}
+
+		if (list.size() != 5 || !list.get(0).equals(new Symbol("define-fun"))
+				|| !(list.get(1) instanceof Symbol) || !TYPES.contains(list.get(3).toString())) {
+			failed = true;
+			return;
+		}
+
+		String id = Quoting.unquote(((Symbol) list.get(1)).str);
+		model.addValue(id, list.get(4));
+	}
+
+	private void atom(String text) {
+		if (stack.isEmpty()) {
+			failed = true;
+		} else if (stack.size() == 1 && !text.equals("model")) {
+			failed = true;
+		} else {
+			stack.peek().add(new Symbol(isDecimal(text) ? ModelExtractor.parse(text) : text));
+		}
+	}
+
+	private static boolean isDecimal(String text) {
+		int dot = text.indexOf('.');
+		return dot > 0 && dot < text.length() - 1 && isDigits(text, 0, dot)
+				&& isDigits(text, dot + 1, text.length());
+	}
+
+	private static boolean isDigits(String text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isDigit(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
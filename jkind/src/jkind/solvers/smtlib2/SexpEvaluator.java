@@ -42,6 +42,8 @@ public class SexpEvaluator {
 			return model.getValue(sym);
 		} else if (sym.contains("/")) {
 			return Util.parseValue("real", sym);
+		} else if (sym.contains(".")) {
+			return Util.parseValue("real", ModelExtractor.parse(sym));
 		} else {
 			return Util.parseValue("int", sym);
 		}
@@ -0,0 +1,73 @@
+package jkind.solvers.smtlib2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import jkind.JKindException;
+import jkind.sexp.Cons;
+import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
+
+/**
+ * Reads solver output which is not a model, such as get-value responses and
+ * interpolants, into s-expressions. Quoted symbols keep their bars and
+ * numbers are left as they are.
+ */
+public class SexpParser {
+	private static final Symbol EMPTY = new Symbol("()");
+
+	/** Parse a sequence of s-expressions */
+	public static List<Sexp> parse(String text) {
+		Deque<List<Sexp>> stack = new ArrayDeque<>();
+		List<Sexp> result = new ArrayList<>();
+		stack.push(result);
+
+		int i = 0;
+		int n = text.length();
+		while (i < n) {
+			char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == ';') {
+				while (i < n && text.charAt(i) != '\n') {
+					i++;
+				}
+			} else if (c == '(') {
+				stack.push(new ArrayList<>());
+				i++;
+			} else if (c == ')') {
+				if (stack.size() == 1) {
+					throw new JKindException("Unbalanced solver output: " + text);
+				}
+				List<Sexp> list = stack.pop();
+				stack.peek().add(list.isEmpty() ? EMPTY : new Cons(list));
+				i++;
+			} else if (c == '|' || c == '"') {
+				int end = text.indexOf(c, i + 1);
+				if (end < 0) {
+					throw new JKindException("Unterminated symbol in solver output: " + text);
+				}
+				stack.peek().add(new Symbol(text.substring(i, end + 1)));
+				i = end + 1;
+			} else {
+				int start = i;
+				while (i < n && !isDelimiter(text.charAt(i))) {
+					i++;
+				}
+				stack.peek().add(new Symbol(text.substring(start, i)));
+			}
+		}
+
+		if (stack.size() != 1) {
+			throw new JKindException("Unbalanced solver output: " + text);
+		}
+		return result;
+	}
+
+	private static boolean isDelimiter(char c) {
+		return c == '(' || c == ')' || c == '|' || c == '"' || c == ';'
+				|| Character.isWhitespace(c);
+	}
+}
@@ -0,0 +1,66 @@
+package jkind.solvers.smtlib2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jkind.JKindException;
+import jkind.lustre.Type;
+import jkind.lustre.values.Value;
+import jkind.solvers.Model;
+
+/**
+ * A model which asks the solver for values with get-value the first time
+ * they are read. It is only usable until the solver receives its next
+ * command, see Solver.lazyQuery.
+ */
+public class SmtLib2LazyModel extends Model {
+	private final SmtLib2Solver solver;
+	private final SmtLib2Model values;
+	private final Set<String> fetched = new HashSet<>();
+	private boolean open = true;
+
+	public SmtLib2LazyModel(SmtLib2Solver solver, Map<String, Type> varTypes) {
+		super(varTypes);
+		this.solver = solver;
+		this.values = new SmtLib2Model(varTypes);
+	}
+
+	@Override
+	public Value getValue(String name) {
+		prefetch(Collections.singletonList(name));
+		return values.getValue(name);
+	}
+
+	@Override
+	public void prefetch(Collection<String> names) {
+		List<String> missing = new ArrayList<>();
+		for (String name : names) {
+			if (varTypes.containsKey(name) && !fetched.contains(name)) {
+				missing.add(name);
+			}
+		}
+		if (missing.isEmpty()) {
+			return;
+		}
+
+		if (!open) {
+			throw new JKindException("Model values requested after the solver moved on");
+		}
+		solver.getValues(missing, values);
+		fetched.addAll(missing);
+	}
+
+	@Override
+	public Set<String> getVariableNames() {
+		return varTypes.keySet();
+	}
+
+	void close() {
+		open = false;
+	}
+}
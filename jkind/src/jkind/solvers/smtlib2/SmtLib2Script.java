@@ -0,0 +1,333 @@
+package jkind.solvers.smtlib2;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jkind.JKindException;
+import jkind.lustre.values.BooleanValue;
+import jkind.lustre.values.IntegerValue;
+import jkind.lustre.values.RealValue;
+import jkind.lustre.values.Value;
+import jkind.sexp.Cons;
+import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
+import jkind.util.BigFraction;
+import de.uni_freiburg.informatik.ultimate.logic.AnnotatedTerm;
+import de.uni_freiburg.informatik.ultimate.logic.Annotation;
+import de.uni_freiburg.informatik.ultimate.logic.FormulaLet;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Model;
+import de.uni_freiburg.informatik.ultimate.logic.NoopScript;
+import de.uni_freiburg.informatik.ultimate.logic.PrintTerm;
+import de.uni_freiburg.informatik.ultimate.logic.QuotedObject;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.TerminationRequest;
+
+/**
+ * An SMTInterpol Script which builds terms locally and sends the commands to
+ * an SMT-LIB solver process. This lets code written against the SMTInterpol
+ * API, such as PDR, run on an external solver. Only the commands PDR uses are
+ * supported, and interpolation needs a solver with supportsInterpolation.
+ *
+ * A model from getModel asks the solver for values, so it can only be used
+ * until the next command.
+ */
+public class SmtLib2Script extends NoopScript {
+	private static final List<String> FORWARDED_OPTIONS = Arrays.asList(":produce-interpolants",
+			":produce-unsat-cores");
+	private static final List<String> ARITHMETIC = Arrays.asList("+", "-", "*", "/", "=", "<=",
+			"<", ">=", ">", "distinct");
+
+	private final SmtLib2Solver solver;
+	private final TerminationRequest termination;
+
+	public SmtLib2Script(SmtLib2Solver solver, TerminationRequest termination) {
+		this.solver = solver;
+		this.termination = termination;
+		solver.initialize();
+	}
+
+	@Override
+	public void setOption(String opt, Object value) {
+		// Other options are specific to SMTInterpol
+		if (FORWARDED_OPTIONS.contains(opt)) {
+			solver.send("(set-option " + opt + " " + value + ")");
+		}
+	}
+
+	@Override
+	public void setLogic(Logics logic) {
+		super.setLogic(logic);
+		solver.send("(set-logic " + logic + ")");
+	}
+
+	@Override
+	public void declareFun(String fun, Sort[] paramSorts, Sort resultSort) {
+		super.declareFun(fun, paramSorts, resultSort);
+		StringBuilder params = new StringBuilder();
+		for (Sort sort : paramSorts) {
+			params.append(" ").append(sort);
+		}
+		solver.send("(declare-fun " + PrintTerm.quoteIdentifier(fun) + " (" + params + ") "
+				+ resultSort + ")");
+	}
+
+	@Override
+	public void defineFun(String fun, TermVariable[] params, Sort resultSort, Term definition) {
+		super.defineFun(fun, params, resultSort, definition);
+		StringBuilder args = new StringBuilder();
+		for (TermVariable param : params) {
+			// Printed as in the definition
+			args.append(" (").append(param).append(" ").append(param.getSort()).append(")");
+		}
+		solver.send("(define-fun " + PrintTerm.quoteIdentifier(fun) + " (" + args + ") "
+				+ resultSort + " " + toText(definition) + ")");
+	}
+
+	@Override
+	public void push(int levels) {
+		super.push(levels);
+		for (int i = 0; i < levels; i++) {
+			solver.push();
+		}
+	}
+
+	@Override
+	public void pop(int levels) {
+		super.pop(levels);
+		for (int i = 0; i < levels; i++) {
+			solver.pop();
+		}
+	}
+
+	@Override
+	public LBool assertTerm(Term term) {
+		String name = getName(term);
+		if (name != null) {
+			Term body = ((AnnotatedTerm) term).getSubterm();
+			solver.send("(assert " + solver.name(toText(body), name) + ")");
+		} else {
+			solver.send("(assert " + toText(term) + ")");
+		}
+		return LBool.UNKNOWN;
+	}
+
+	private static String getName(Term term) {
+		if (term instanceof AnnotatedTerm) {
+			Annotation[] annotations = ((AnnotatedTerm) term).getAnnotations();
+			if (annotations.length == 1 && annotations[0].getKey().equals(":named")) {
+				return PrintTerm.quoteIdentifier(annotations[0].getValue().toString());
+			}
+		}
+		return null;
+	}
+
+	/** Print a term with shared subterms let-bound, as SMTInterpol logs it */
+	private static String toText(Term term) {
+		return new FormulaLet().let(term).toString();
+	}
+
+	@Override
+	public LBool checkSat() {
+		String status;
+		try {
+			status = solver.checkSat().trim();
+		} catch (JKindException e) {
+			if (termination.isTerminationRequested()) {
+				// The solver was killed by cancel
+				return LBool.UNKNOWN;
+			}
+			throw e;
+		}
+
+		switch (status) {
+		case "sat":
+			return LBool.SAT;
+		case "unsat":
+			return LBool.UNSAT;
+		default:
+			return LBool.UNKNOWN;
+		}
+	}
+
+	@Override
+	public Model getModel() {
+		return new SolverModel();
+	}
+
+	private class SolverModel implements Model {
+		@Override
+		public Term evaluate(Term input) {
+			return evaluate(new Term[] { input }).get(input);
+		}
+
+		@Override
+		public Map<Term, Term> evaluate(Term[] input) {
+			List<String> texts = new ArrayList<>();
+			for (Term term : input) {
+				texts.add(toText(term));
+			}
+			List<Value> values = solver.evaluate(texts);
+
+			Map<Term, Term> result = new HashMap<>();
+			for (int i = 0; i < input.length; i++) {
+				result.put(input[i], toTerm(values.get(i), input[i].getSort()));
+			}
+			return result;
+		}
+	}
+
+	private Term toTerm(Value value, Sort sort) {
+		if (value instanceof BooleanValue) {
+			return term(((BooleanValue) value).value ? "true" : "false");
+		}
+
+		BigFraction fraction;
+		if (value instanceof IntegerValue) {
+			fraction = new BigFraction(((IntegerValue) value).value);
+		} else if (value instanceof RealValue) {
+			fraction = ((RealValue) value).value;
+		} else {
+			throw new JKindException("Unhandled value from solver: " + value);
+		}
+		return Rational.valueOf(fraction.getNumerator(), fraction.getDenominator()).toTerm(sort);
+	}
+
+	@Override
+	public Term[] getUnsatCore() {
+		List<String> names = solver.getUnsatCore();
+		Term[] result = new Term[names.size()];
+		for (int i = 0; i < names.size(); i++) {
+			result[i] = term(names.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public Term[] getInterpolants(Term[] partition) {
+		List<String> names = new ArrayList<>();
+		for (Term term : partition) {
+			names.add(term.toString());
+		}
+
+		List<Sexp> interpolants = solver.getInterpolants(names);
+		if (interpolants.size() != partition.length - 1) {
+			throw new JKindException("Expected " + (partition.length - 1)
+					+ " interpolants but got " + interpolants.size());
+		}
+
+		Term[] result = new Term[interpolants.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = toTerm(interpolants.get(i), new HashMap<>());
+		}
+		return result;
+	}
+
+	/** Rebuild a formula from the solver over our declarations */
+	private Term toTerm(Sexp sexp, Map<String, Term> bindings) {
+		if (sexp instanceof Symbol) {
+			return toTerm(((Symbol) sexp).str, bindings);
+		}
+
+		Cons cons = (Cons) sexp;
+		if (!(cons.head instanceof Symbol)) {
+			throw new JKindException("Unhandled term from solver: " + cons);
+		}
+		String head = ((Symbol) cons.head).str;
+
+		if (head.equals("let")) {
+			Map<String, Term> inner = new HashMap<>(bindings);
+			for (Sexp binding : SmtLib2Solver.elements((Cons) cons.args.get(0))) {
+				Cons pair = (Cons) binding;
+				String var = Quoting.unquote(((Symbol) pair.head).str);
+				inner.put(var, toTerm(pair.args.get(0), bindings));
+			}
+			return toTerm(cons.args.get(1), inner);
+		} else if (head.equals("!")) {
+			return toTerm(cons.args.get(0), bindings);
+		}
+
+		Term[] args = new Term[cons.args.size()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = toTerm(cons.args.get(i), bindings);
+		}
+		if (head.equals("/") && args.length == 2 && isNumeral(cons.args.get(0))
+				&& isNumeral(cons.args.get(1))) {
+			BigInteger num = new BigInteger(((Symbol) cons.args.get(0)).str);
+			BigInteger den = new BigInteger(((Symbol) cons.args.get(1)).str);
+			return Rational.valueOf(num, den).toTerm(sort("Real"));
+		}
+		if (ARITHMETIC.contains(head)) {
+			promoteIntegers(args);
+		}
+		return term(Quoting.unquote(head), args);
+	}
+
+	private Term toTerm(String text, Map<String, Term> bindings) {
+		String name = Quoting.unquote(text);
+		if (bindings.containsKey(name)) {
+			return bindings.get(name);
+		} else if (Character.isDigit(text.charAt(0))) {
+			return text.contains(".") ? decimal(text) : numeral(text);
+		}
+		return term(name);
+	}
+
+	private static boolean isNumeral(Sexp sexp) {
+		return sexp instanceof Symbol && ((Symbol) sexp).str.matches("[0-9]+");
+	}
+
+	/** Solvers may leave integer constants in real arithmetic */
+	private void promoteIntegers(Term[] args) {
+		Sort real = sort("Real");
+		boolean mixed = false;
+		for (Term arg : args) {
+			mixed |= arg.getSort().equals(real);
+		}
+		if (!mixed) {
+			return;
+		}
+
+		Sort integer = sort("Int");
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].getSort().equals(integer)) {
+				args[i] = term("to_real", args[i]);
+			}
+		}
+	}
+
+	@Override
+	public Object getInfo(String info) {
+		if (termination.isTerminationRequested()) {
+			return "canceled";
+		}
+		try {
+			return solver.getInfo(info);
+		} catch (JKindException e) {
+			return "unknown (" + e.getMessage() + ")";
+		}
+	}
+
+	@Override
+	public QuotedObject echo(QuotedObject msg) {
+		solver.comment(msg.getValue().toString());
+		return msg;
+	}
+
+	/** Kill the solver, which may be running a check on another thread */
+	public void cancel() {
+		solver.cancel();
+	}
+
+	@Override
+	public void exit() {
+		solver.stop();
+	}
+}
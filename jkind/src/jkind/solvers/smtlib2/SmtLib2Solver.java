@@ -2,20 +2,33 @@ package jkind.solvers.smtlib2;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import jkind.JKindException;
 import jkind.lustre.NamedType;
 import jkind.lustre.Type;
 import jkind.lustre.VarDecl;
 import jkind.lustre.parsing.StdoutErrorListener;
+import jkind.lustre.values.Value;
 import jkind.sexp.Cons;
+import jkind.sexp.LetBinder;
 import jkind.sexp.Sexp;
 import jkind.sexp.Symbol;
 import jkind.solvers.Model;
 import jkind.solvers.ProcessBasedSolver;
+import jkind.solvers.QueryFuture;
 import jkind.solvers.Result;
 import jkind.solvers.SatResult;
+import jkind.solvers.UnknownResult;
 import jkind.solvers.UnsatResult;
 import jkind.solvers.smtlib2.SmtLib2Parser.ModelContext;
 import jkind.translation.TransitionRelation;
@@ -29,6 +42,11 @@ import org.antlr.v4.runtime.RecognitionException;
 public abstract class SmtLib2Solver extends ProcessBasedSolver {
 	final protected String name;
 
+	// Lazy model from the last query, still able to fetch values
+	private SmtLib2LazyModel openModel;
+	// Pop which must wait until the lazy model is closed
+	private Runnable afterModel;
+
 	public SmtLib2Solver(String scratchBase, ProcessBuilder pb, String name) {
 		super(scratchBase, pb);
 		this.name = name;
@@ -36,25 +54,42 @@ public abstract class SmtLib2Solver extends ProcessBasedSolver {
 
 	@Override
 	public void assertSexp(Sexp sexp) {
-		send(new Cons("assert", sexp));
+		send(new Cons("assert", LetBinder.bind(sexp)));
 	}
 
 	protected void send(Sexp sexp) {
-		send(Quoting.quoteSexp(sexp).toString());
+		closeModel();
+		transmit(sexp);
 	}
 
 	protected void send(String str) {
+		closeModel();
+		transmit(str);
+	}
+
+	private void transmit(Sexp sexp) {
+		try {
+			write(sexp, Quoting::needsQuotes);
+		} catch (IOException e) {
+			throw writeFailed(e);
+		}
+	}
+
+	private void transmit(String str) {
 		scratch(str);
 		try {
 			toSolver.append(str);
 			toSolver.newLine();
-			toSolver.flush();
 		} catch (IOException e) {
-			throw new JKindException("Unable to write to " + name + ", "
-					+ "probably due to internal JKind error", e);
+			throw writeFailed(e);
 		}
 	}
 
+	private JKindException writeFailed(IOException e) {
+		return new JKindException("Unable to write to " + name + ", "
+				+ "probably due to internal JKind error", e);
+	}
+
 	private Symbol type(Type type) {
 		return new Symbol(capitalize(Util.getName(type)));
 	}
@@ -72,7 +107,7 @@ public abstract class SmtLib2Solver extends ProcessBasedSolver {
 	@Override
 	public void define(TransitionRelation lambda) {
 		send(new Cons("define-fun", TransitionRelation.T, inputs(lambda.getInputs()),
-				type(NamedType.BOOL), lambda.getBody()));
+				type(NamedType.BOOL), LetBinder.bind(lambda.getBody())));
 	}
 
 	private Sexp inputs(List<VarDecl> inputs) {
@@ -83,29 +118,345 @@ public abstract class SmtLib2Solver extends ProcessBasedSolver {
 		return new Cons(args);
 	}
 
+	/**
+	 * Whether the solver can check satisfiability under assumptions. If so,
+	 * queries are guarded by activation literals rather than scoped with push
+	 * and pop, so the solver keeps what it has learned between queries.
+	 */
+	protected boolean supportsAssumptions() {
+		return false;
+	}
+
+	protected Sexp checkSatAssuming(List<Sexp> assumptions) {
+		return new Cons("check-sat-assuming", new Cons(new ArrayList<>(assumptions)));
+	}
+
 	@Override
 	public Result query(Sexp sexp) {
+		if (supportsAssumptions()) {
+			return query(Collections.emptyList(), sexp);
+		}
+
 		Result result = null;
 		push();
 
 		assertSexp(new Cons("not", sexp));
-		send("(check-sat)");
-		send("(echo \"" + DONE + "\")");
-		String status = readFromSolver();
+		String status = checkSat();
 		if (isSat(status)) {
-			send("(get-model)");
-			send("(echo \"" + DONE + "\")");
-			result = new SatResult(parseModel(readFromSolver()));
+			result = new SatResult(getModel());
 		} else if (isUnsat(status)) {
 			result = new UnsatResult();
 		} else {
-			throw new IllegalArgumentException("Unknown result: " + result);
+			throw new IllegalArgumentException("Unknown result: " + status);
 		}
 
 		pop();
 		return result;
 	}
 
+	@Override
+	public Result query(List<Symbol> assumptions, Sexp sexp) {
+		if (!supportsAssumptions()) {
+			return super.query(assumptions, sexp);
+		}
+
+		Result result;
+		String status = checkSat(assumptions, negationAssumption(sexp));
+		if (isSat(status)) {
+			result = new SatResult(getModel());
+		} else if (isUnsat(status)) {
+			result = new UnsatResult(toLabels(getUnsatAssumptions(assumptions)));
+		} else {
+			// Even for unknown we can get a partial model
+			result = new UnknownResult(getModel());
+		}
+		return result;
+	}
+
+	/**
+	 * The assumptions needed by the last unsatisfiable check. By default this
+	 * is all of them, for solvers which do not report cores.
+	 */
+	protected List<Symbol> getUnsatAssumptions(List<Symbol> assumptions) {
+		return assumptions;
+	}
+
+	/**
+	 * Read a list of assumption names, such as the response to
+	 * get-unsat-assumptions, keeping only those among the given assumptions
+	 */
+	protected List<Symbol> readUnsatAssumptions(List<Symbol> assumptions) {
+		String output = readFromSolver().replace('(', ' ').replace(')', ' ');
+		Set<String> names = new HashSet<>(Arrays.asList(output.trim().split("\\s+")));
+
+		List<Symbol> result = new ArrayList<>();
+		for (Symbol assumption : assumptions) {
+			if (names.contains(assumption.str)) {
+				result.add(assumption);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Result lazyQuery(Sexp sexp) {
+		return finishLazyQuery(startLazyQuery(sexp));
+	}
+
+	@Override
+	public QueryFuture submitLazyQuery(Sexp sexp) {
+		PendingCheck check = startLazyQuery(sexp);
+		return new QueryFuture(check.response, () -> finishLazyQuery(check));
+	}
+
+	private PendingCheck startLazyQuery(Sexp sexp) {
+		if (supportsAssumptions()) {
+			Sexp assumption = negationAssumption(sexp);
+			return startCheck(checkSatAssuming(Collections.singletonList(assumption)), assumption);
+		}
+
+		push();
+		assertSexp(new Cons("not", sexp));
+		return startCheck(new Cons("check-sat"), null);
+	}
+
+	private Result finishLazyQuery(PendingCheck check) {
+		String status = readStatus(check);
+
+		if (check.assumption != null) {
+			if (isSat(status)) {
+				return new SatResult(openLazyModel());
+			} else if (isUnsat(status)) {
+				return new UnsatResult();
+			} else {
+				return new UnknownResult(getModel());
+			}
+		}
+
+		if (isSat(status)) {
+			// The pop is delayed until the model is closed
+			afterModel = this::pop;
+			return new SatResult(openLazyModel());
+		} else if (isUnsat(status)) {
+			pop();
+			return new UnsatResult();
+		} else {
+			throw new IllegalArgumentException("Unknown result: " + status);
+		}
+	}
+
+	/** A check which has been sent but whose status has not been read yet */
+	private static class PendingCheck {
+		final CompletableFuture<Response> response;
+		final long start;
+		// Assumption negating the query, or null if it is inside a push
+		final Sexp assumption;
+
+		PendingCheck(CompletableFuture<Response> response, long start, Sexp assumption) {
+			this.response = response;
+			this.start = start;
+			this.assumption = assumption;
+		}
+	}
+
+	private PendingCheck startCheck(Sexp command, Sexp assumption) {
+		long start = System.nanoTime();
+		send(command);
+		send("(echo \"" + DONE + "\")");
+		return new PendingCheck(expect(), start, assumption);
+	}
+
+	private String readStatus(PendingCheck check) {
+		StringBuilder content = new StringBuilder();
+		Response response = readResponse(check.response, line -> {
+			content.append(line);
+			content.append("\n");
+		});
+		statistics.check(response.arrival - check.start);
+		return content.toString();
+	}
+
+	String checkSat() {
+		return readStatus(startCheck(new Cons("check-sat"), null));
+	}
+
+	private String checkSat(List<Symbol> assumptions, Sexp assumption) {
+		List<Sexp> all = new ArrayList<>(assumptions);
+		all.add(assumption);
+		return readStatus(startCheck(checkSatAssuming(all), assumption));
+	}
+
+	private Model getModel() {
+		long start = System.nanoTime();
+		send("(get-model)");
+		send("(echo \"" + DONE + "\")");
+		Model model = readModel();
+		statistics.parse(System.nanoTime() - start);
+		statistics.model(model.getVariableNames().size());
+		return model;
+	}
+
+	/**
+	 * Create a model for the current satisfiable state which fetches values
+	 * on demand until the next command is sent
+	 */
+	protected Model openLazyModel() {
+		openModel = new SmtLib2LazyModel(this, varTypes);
+		// Values are counted as they are fetched
+		statistics.model(0);
+		return openModel;
+	}
+
+	private void closeModel() {
+		if (openModel != null) {
+			openModel.close();
+			openModel = null;
+			if (afterModel != null) {
+				Runnable action = afterModel;
+				afterModel = null;
+				action.run();
+			}
+		}
+	}
+
+	@Override
+	protected boolean reset() {
+		if (openModel != null) {
+			// The reset discards the pending action along with everything else
+			openModel.close();
+			openModel = null;
+			afterModel = null;
+		}
+
+		try {
+			transmit("(reset)");
+			transmit("(echo \"" + DONE + "\")");
+			readFromSolver(line -> {
+			});
+			return true;
+		} catch (JKindException e) {
+			return false;
+		}
+	}
+
+	void getValues(List<String> names, SmtLib2Model model) {
+		List<Sexp> symbols = new ArrayList<>();
+		for (String name : names) {
+			symbols.add(new Symbol(name));
+		}
+		long start = System.nanoTime();
+		transmit(new Cons("get-value", new Cons(symbols)));
+		transmit("(echo \"" + DONE + "\")");
+
+		ModelReader reader = new ModelReader(model);
+		readFromSolver(reader::read);
+		if (reader.getModel() == null) {
+			throw new JKindException("Error parsing " + name + " values");
+		}
+		statistics.parse(System.nanoTime() - start);
+		statistics.values(names.size());
+	}
+
+	/*
+	 * Commands for clients which build their own terms, see SmtLib2Script.
+	 * Terms are passed as SMT-LIB text.
+	 */
+
+	/** Values of terms in the current model, in the order given */
+	List<Value> evaluate(List<String> terms) {
+		long start = System.nanoTime();
+		send("(get-value (" + String.join(" ", terms) + "))");
+		send("(echo \"" + DONE + "\")");
+		List<Sexp> response = SexpParser.parse(readFromSolver());
+		if (response.size() != 1 || !(response.get(0) instanceof Cons)) {
+			throw new JKindException("Error parsing " + name + " values");
+		}
+
+		List<Value> values = new ArrayList<>();
+		SexpEvaluator evaluator = new SexpEvaluator(new SmtLib2Model(Collections.emptyMap()));
+		for (Sexp pair : elements((Cons) response.get(0))) {
+			if (!(pair instanceof Cons) || ((Cons) pair).args.size() != 1) {
+				throw new JKindException("Error parsing " + name + " values");
+			}
+			values.add(evaluator.eval(((Cons) pair).args.get(0)));
+		}
+		if (values.size() != terms.size()) {
+			throw new JKindException("Error parsing " + name + " values");
+		}
+		statistics.parse(System.nanoTime() - start);
+		statistics.values(terms.size());
+		return values;
+	}
+
+	protected static List<Sexp> elements(Cons cons) {
+		List<Sexp> result = new ArrayList<>();
+		result.add(cons.head);
+		result.addAll(cons.args);
+		return result;
+	}
+
+	/** Names of the named assertions needed by the last unsatisfiable check */
+	List<String> getUnsatCore() {
+		send("(get-unsat-core)");
+		send("(echo \"" + DONE + "\")");
+		String output = readFromSolver().replace('(', ' ').replace(')', ' ').trim();
+
+		List<String> names = new ArrayList<>();
+		if (!output.isEmpty()) {
+			for (String name : output.split("\\s+")) {
+				names.add(Quoting.unquote(name));
+			}
+		}
+		return names;
+	}
+
+	String getInfo(String info) {
+		send("(get-info " + info + ")");
+		send("(echo \"" + DONE + "\")");
+		return readFromSolver().trim();
+	}
+
+	/**
+	 * Whether the solver reports a version of at least major.minor. False if
+	 * the version cannot be read.
+	 */
+	protected boolean isVersionAtLeast(int major, int minor) {
+		Matcher matcher = Pattern.compile("\"(\\d+)\\.(\\d+)").matcher(getInfo(":version"));
+		if (!matcher.find()) {
+			return false;
+		}
+		int actualMajor = Integer.parseInt(matcher.group(1));
+		int actualMinor = Integer.parseInt(matcher.group(2));
+		return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+	}
+
+	/**
+	 * Whether the solver can compute interpolants between named assertions,
+	 * see getInterpolants. This may ask the solver, so it should be called
+	 * before anything is asserted.
+	 */
+	public boolean supportsInterpolation() {
+		return false;
+	}
+
+	/**
+	 * Annotate an assertion with a name. The name identifies the assertion in
+	 * unsat cores and, for solvers which support it, in getInterpolants.
+	 */
+	protected String name(String term, String name) {
+		return "(! " + term + " :named " + name + ")";
+	}
+
+	/**
+	 * Sequence interpolants for the given named assertions after an
+	 * unsatisfiable check. The i-th interpolant is implied by the first i+1
+	 * assertions and inconsistent with the rest, so there is one fewer
+	 * interpolant than there are names.
+	 */
+	protected List<Sexp> getInterpolants(List<String> names) {
+		throw new JKindException(name + " does not support interpolation");
+	}
+
 	protected boolean isSat(String output) {
 		return output.trim().equals("sat");
 	}
@@ -115,43 +466,81 @@ public abstract class SmtLib2Solver extends ProcessBasedSolver {
 	}
 
 	protected String readFromSolver() {
+		StringBuilder content = new StringBuilder();
+		readFromSolver(line -> {
+			content.append(line);
+			content.append("\n");
+		});
+		return content.toString();
+	}
+
+	/**
+	 * Read solver output up to the next done marker, passing each line of
+	 * content to the consumer
+	 */
+	protected void readFromSolver(Consumer<String> content) {
+		readResponse(expect(), content);
+	}
+
+	private CompletableFuture<Response> expect() {
 		try {
-			String line;
-			StringBuilder content = new StringBuilder();
-			while (true) {
-				line = fromSolver.readLine();
+			return expectResponse();
+		} catch (IOException e) {
+			throw writeFailed(e);
+		}
+	}
+
+	private Response readResponse(Future<Response> future, Consumer<String> content) {
+		Response response;
+		try {
+			response = awaitResponse(future);
+		} catch (IOException e) {
+			throw new JKindException("Unable to read from " + name, e);
+		}
+
+		boolean error = false;
+		try {
+			for (String line : response.lines) {
 				comment(name + ": " + line);
-				if (line == null) {
-					throw new JKindException(name + " terminated unexpectedly");
-				} else if (line.contains("define-fun " + TransitionRelation.T + " ")) {
-					// No need to parse the transition relation
-				} else if (isDone(line)) {
-					break;
+				if (error || line.contains("define-fun " + TransitionRelation.T + " ")) {
+					// No need to parse the transition relation, or the rest of
+					// an error message which spans multiple lines
 				} else if (line.contains("error \"") || line.contains("Error:")) {
-					// Flush the output since errors span multiple lines
-					while ((line = fromSolver.readLine()) != null) {
-						comment(name + ": " + line);
-						if (isDone(line)) {
-							break;
-						}
-					}
-					throw new JKindException(name + " error (see scratch file for details)");
+					error = true;
 				} else {
-					content.append(line);
-					content.append("\n");
+					content.accept(line);
 				}
 			}
-
-			return content.toString();
 		} catch (RecognitionException e) {
 			throw new JKindException("Error parsing " + name + " output", e);
-		} catch (IOException e) {
-			throw new JKindException("Unable to read from " + name, e);
 		}
+
+		comment(name + ": " + response.marker);
+		if (response.marker == null) {
+			throw new JKindException(name + " terminated unexpectedly");
+		} else if (error) {
+			throw new JKindException(name + " error (see scratch file for details)");
+		}
+		return response;
 	}
 
-	protected boolean isDone(String line) {
-		return line.contains(DONE);
+	/**
+	 * Read the response to (get-model). Common model shapes are parsed as
+	 * the lines arrive, anything else goes through parseModel.
+	 */
+	protected Model readModel() {
+		List<String> lines = new ArrayList<>();
+		ModelReader reader = new ModelReader(varTypes);
+		readFromSolver(line -> {
+			lines.add(line);
+			reader.read(line);
+		});
+
+		Model model = reader.getModel();
+		if (model != null) {
+			return model;
+		}
+		return parseModel(String.join("\n", lines));
 	}
 
 	protected Model parseModel(String string) {
@@ -173,11 +562,13 @@ public abstract class SmtLib2Solver extends ProcessBasedSolver {
 	@Override
 	public void push() {
 		send("(push 1)");
+		statistics.push();
 	}
 
 	@Override
 	public void pop() {
 		send("(pop 1)");
+		statistics.pop();
 	}
 
 	@Override
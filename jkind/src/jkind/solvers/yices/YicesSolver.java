@@ -31,10 +31,14 @@ public class YicesSolver extends ProcessBasedSolver {
 	private final boolean arithOnly;
 
 	public YicesSolver(String scratchBase, boolean arithOnly) {
-		super(scratchBase, new ProcessBuilder(getYices()));
+		super(scratchBase, getProcessBuilder());
 		this.arithOnly = arithOnly;
 	}
 
+	public static ProcessBuilder getProcessBuilder() {
+		return new ProcessBuilder(getYices());
+	}
+
 	private static String getYices() {
 		String home = System.getenv("YICES_HOME");
 		if (home != null) {
@@ -56,7 +60,13 @@ public class YicesSolver extends ProcessBasedSolver {
 
 	@Override
 	public void assertSexp(Sexp sexp) {
-		send("(assert " + sexp + ")");
+		try {
+			// Yices symbols never need quoting
+			write(new Cons("assert", sexp), symbol -> false);
+		} catch (IOException e) {
+			throw new JKindException("Unable to write to yices, "
+					+ "probably due to internal JKind error", e);
+		}
 	}
 
 	private void send(String str) {
@@ -64,7 +74,6 @@ public class YicesSolver extends ProcessBasedSolver {
 		try {
 			toSolver.append(str);
 			toSolver.newLine();
-			toSolver.flush();
 		} catch (IOException e) {
 			throw new JKindException("Unable to write to yices, "
 					+ "probably due to internal JKind error", e);
@@ -131,11 +140,12 @@ public class YicesSolver extends ProcessBasedSolver {
 		 */
 
 		Label label = labelledAssert(new Cons("not", sexp));
+		long start = System.nanoTime();
 		send("(check)");
 		send("(echo \"" + DONE + "\\n\")");
 		retract(label);
 
-		Result result = readResult();
+		Result result = readResult(start);
 		if (result == null) {
 			throw new JKindException("Unknown result from yices");
 		}
@@ -152,28 +162,30 @@ public class YicesSolver extends ProcessBasedSolver {
 
 	public Result maxsatQuery(Sexp sexp) {
 		Label label = labelledAssert(new Cons("not", sexp));
+		long start = System.nanoTime();
 		send("(max-sat)");
 		send("(echo \"" + DONE + "\\n\")");
 		retract(label);
 
-		Result result = readResult();
+		Result result = readResult(start);
 		if (result == null) {
 			throw new JKindException("Unknown result from yices");
 		}
 		return result;
 	}
 
-	private Result readResult() {
+	/**
+	 * Read the result of a check started at the given time. Yices prints the
+	 * model along with the result, which is parsed once it has all arrived.
+	 */
+	private Result readResult(long start) {
 		try {
-			String line;
+			Response response = awaitResponse(expectResponse());
 			StringBuilder content = new StringBuilder();
 			boolean seenContextError = false;
-			while (true) {
-				line = fromSolver.readLine();
+			for (String line : response.lines) {
 				comment("YICES: " + line);
-				if (line == null) {
-					throw new JKindException("Yices terminated unexpectedly");
-				} else if (line.contains("Error:")) {
+				if (line.contains("Error:")) {
 					throw new JKindException("Yices error: " + line);
 				} else if (line.startsWith("Logical context")) {
 					/*
@@ -187,15 +199,25 @@ public class YicesSolver extends ProcessBasedSolver {
 					}
 					seenContextError = true;
 					continue;
-				} else if (line.equals(DONE)) {
-					break;
 				} else {
 					content.append(line);
 					content.append("\n");
 				}
 			}
 
-			return parseYices(content.toString());
+			comment("YICES: " + response.marker);
+			if (response.marker == null) {
+				throw new JKindException("Yices terminated unexpectedly");
+			}
+
+			statistics.check(response.arrival - start);
+			long parseStart = System.nanoTime();
+			Result result = parseYices(content.toString());
+			statistics.parse(System.nanoTime() - parseStart);
+			if (!(result instanceof UnsatResult)) {
+				statistics.model(varTypes.size());
+			}
+			return result;
 		} catch (RecognitionException e) {
 			throw new JKindException("Error parsing Yices output", e);
 		} catch (IOException e) {
@@ -225,11 +247,13 @@ public class YicesSolver extends ProcessBasedSolver {
 	@Override
 	public void push() {
 		send("(push)");
+		statistics.push();
 	}
 
 	@Override
 	public void pop() {
 		send("(pop)");
+		statistics.pop();
 	}
 
 	@Override
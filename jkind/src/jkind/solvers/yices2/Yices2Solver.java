@@ -13,7 +13,11 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 public class Yices2Solver extends SmtLib2Solver {
 	public Yices2Solver(String scratchBase) {
-		super(scratchBase, new ProcessBuilder("yices-smt2", "--incremental"), "Yices2");
+		super(scratchBase, getProcessBuilder(), "Yices2");
+	}
+
+	public static ProcessBuilder getProcessBuilder() {
+		return new ProcessBuilder("yices-smt2", "--incremental");
 	}
 
 	@Override
@@ -22,6 +26,12 @@ public class Yices2Solver extends SmtLib2Solver {
 		send("(set-logic QF_LIRA)");
 	}
 
+	@Override
+	protected Model readModel() {
+		// Yices 2 does not use define-fun in its models
+		return parseModel(readFromSolver());
+	}
+
 	@Override
 	protected Model parseModel(String string) {
 		CharStream stream = new ANTLRInputStream(string);
@@ -0,0 +1,189 @@
+package jkind.solvers.z3;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jkind.JKindException;
+
+/**
+ * Access to the Z3 Java bindings (com.microsoft.z3) which ship with Z3 but
+ * are not a build dependency of JKind. The bindings are taken from the class
+ * path if present, otherwise from com.microsoft.z3.jar in $Z3_HOME/bin. Their
+ * native libraries (libz3, libz3java) must be on java.library.path.
+ *
+ * Calls are made reflectively. Methods are resolved once per receiver class,
+ * name, and argument classes, so the cost after warm-up is a map lookup and a
+ * reflective call.
+ */
+public class Z3Library {
+	private static final String JAR = "com.microsoft.z3.jar";
+
+	private static ClassLoader loader;
+	private static Throwable loadFailure;
+	private static final Map<String, Method> methods = new ConcurrentHashMap<>();
+
+	/** Check that the bindings and their native libraries can be loaded */
+	public static synchronized boolean isAvailable() {
+		if (loader == null && loadFailure == null) {
+			try {
+				ClassLoader candidate = getClassLoader();
+				Class<?> context = Class.forName("com.microsoft.z3.Context", true, candidate);
+				// Creating a context forces the native libraries to load
+				invoke(context.getConstructor().newInstance(), "close");
+				loader = candidate;
+			} catch (Throwable t) {
+				loadFailure = t;
+			}
+		}
+		return loader != null;
+	}
+
+	public static synchronized String getLoadFailure() {
+		return loadFailure == null ? null : loadFailure.toString();
+	}
+
+	private static ClassLoader getClassLoader() throws Exception {
+		ClassLoader base = Z3Library.class.getClassLoader();
+		try {
+			Class.forName("com.microsoft.z3.Context", false, base);
+			return base;
+		} catch (ClassNotFoundException e) {
+			String home = System.getenv("Z3_HOME");
+			if (home == null) {
+				throw e;
+			}
+			File jar = new File(new File(home, "bin"), JAR);
+			return new URLClassLoader(new URL[] { jar.toURI().toURL() }, base);
+		}
+	}
+
+	public static Class<?> getClass(String name) {
+		try {
+			return Class.forName("com.microsoft.z3." + name, true, loader);
+		} catch (ClassNotFoundException e) {
+			throw new JKindException("Z3 bindings do not provide " + name, e);
+		}
+	}
+
+	public static Object newContext() {
+		try {
+			return getClass("Context").getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new JKindException("Unable to create Z3 context", e);
+		}
+	}
+
+	/**
+	 * Build an array of the given bindings class, as needed for methods such
+	 * as Expr.substitute
+	 */
+	public static Object[] newArray(String className, Object... elements) {
+		Object[] result = (Object[]) Array.newInstance(getClass(className), elements.length);
+		System.arraycopy(elements, 0, result, 0, elements.length);
+		return result;
+	}
+
+	/**
+	 * Call a public method of a bindings object. A method whose only parameter
+	 * is an array (a Java varargs method) is also matched by passing its
+	 * elements directly.
+	 */
+	public static Object invoke(Object target, String name, Object... args) {
+		Method method = getMethod(target.getClass(), name, args);
+		try {
+			if (isPacked(method, args)) {
+				return method.invoke(target, new Object[] { pack(method, args) });
+			}
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw new JKindException("Z3 error in " + name, e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new JKindException("Unable to call Z3 method " + name, e);
+		}
+	}
+
+	private static Method getMethod(Class<?> clazz, String name, Object[] args) {
+		StringBuilder key = new StringBuilder(clazz.getName()).append('#').append(name);
+		for (Object arg : args) {
+			key.append(',').append(arg.getClass().getName());
+		}
+
+		return methods.computeIfAbsent(key.toString(), k -> findMethod(clazz, name, args));
+	}
+
+	private static Method findMethod(Class<?> clazz, String name, Object[] args) {
+		Method packed = null;
+		for (Method method : clazz.getMethods()) {
+			if (!method.getName().equals(name)) {
+				continue;
+			}
+
+			Class<?>[] params = method.getParameterTypes();
+			if (accepts(params, args)) {
+				return method;
+			} else if (packed == null && params.length == 1 && params[0].isArray()
+					&& acceptsAll(params[0].getComponentType(), args)) {
+				packed = method;
+			}
+		}
+
+		if (packed != null) {
+			return packed;
+		}
+		throw new JKindException("Z3 bindings have no suitable method " + clazz.getSimpleName()
+				+ "." + name);
+	}
+
+	private static boolean accepts(Class<?>[] params, Object[] args) {
+		if (params.length != args.length) {
+			return false;
+		}
+		for (int i = 0; i < params.length; i++) {
+			if (!wrap(params[i]).isInstance(args[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean acceptsAll(Class<?> param, Object[] args) {
+		for (Object arg : args) {
+			if (!wrap(param).isInstance(arg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Class<?> wrap(Class<?> type) {
+		if (type == int.class) {
+			return Integer.class;
+		} else if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == long.class) {
+			return Long.class;
+		}
+		return type;
+	}
+
+	private static boolean isPacked(Method method, Object[] args) {
+		Class<?>[] params = method.getParameterTypes();
+		return params.length == 1 && params[0].isArray()
+				&& !(args.length == 1 && params[0].isInstance(args[0]));
+	}
+
+	private static Object pack(Method method, Object[] args) {
+		Class<?> component = method.getParameterTypes()[0].getComponentType();
+		Object array = Array.newInstance(component, args.length);
+		for (int i = 0; i < args.length; i++) {
+			Array.set(array, i, args[i]);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,475 @@
+package jkind.solvers.z3;
+
+import static jkind.solvers.z3.Z3Library.invoke;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import jkind.JKindException;
+import jkind.lustre.Type;
+import jkind.lustre.VarDecl;
+import jkind.lustre.values.BooleanValue;
+import jkind.lustre.values.IntegerValue;
+import jkind.lustre.values.RealValue;
+import jkind.lustre.values.Value;
+import jkind.sexp.Cons;
+import jkind.sexp.Sexp;
+import jkind.sexp.Symbol;
+import jkind.solvers.Model;
+import jkind.solvers.Result;
+import jkind.solvers.SatResult;
+import jkind.solvers.SimpleModel;
+import jkind.solvers.Solver;
+import jkind.solvers.UnknownResult;
+import jkind.solvers.UnsatResult;
+import jkind.translation.TransitionRelation;
+import jkind.util.BigFraction;
+import jkind.util.Util;
+
+/**
+ * Z3 loaded in-process through its Java bindings (see Z3Library). Terms are
+ * built directly from s-expressions and model values are read as native
+ * numbers, so nothing is printed or parsed on the way to the solver.
+ * Models from lazyQuery evaluate variables on demand until the next command.
+ */
+public class Z3NativeSolver extends Solver {
+	private final Object context;
+	private final Object solver;
+	private final PrintWriter scratch;
+
+	private final Map<String, Object> constants = new HashMap<>();
+	// Literals are built once, since each reflective call has a cost
+	private final Map<String, Object> literals = new HashMap<>();
+	private Object[] transitionParams;
+	private Object transitionBody;
+	private boolean closed = false;
+	private LazyModel openModel;
+
+	public Z3NativeSolver(String scratchBase) {
+		this.context = Z3Library.newContext();
+		this.solver = invoke(context, "mkSolver");
+		this.scratch = getScratch(scratchBase);
+	}
+
+	private static PrintWriter getScratch(String scratchBase) {
+		if (scratchBase == null) {
+			return null;
+		}
+
+		String filename = scratchBase + ".smt2";
+		try {
+			return new PrintWriter(new FileOutputStream(filename), true);
+		} catch (FileNotFoundException e) {
+			throw new JKindException("Unable to open scratch file: " + filename, e);
+		}
+	}
+
+	@Override
+	public void initialize() {
+	}
+
+	@Override
+	public void assertSexp(Sexp sexp) {
+		closeModel();
+		scratch(new Cons("assert", sexp).toString());
+		invoke(solver, "add", convert(sexp, null, new IdentityHashMap<>()));
+	}
+
+	@Override
+	public void define(VarDecl decl) {
+		closeModel();
+		scratch("(declare-fun " + decl.id + " () " + Util.getName(decl.type) + ")");
+		varTypes.put(decl.id, decl.type);
+		constants.put(decl.id, mkConst(decl.id, decl.type));
+	}
+
+	@Override
+	public void define(TransitionRelation lambda) {
+		comment("transition relation defined in-process");
+		Map<String, Object> params = new HashMap<>();
+		List<Object> paramList = new ArrayList<>();
+		for (VarDecl input : lambda.getInputs()) {
+			// Bound names live in their own namespace so they cannot clash
+			Object param = mkConst("%T%" + input.id, input.type);
+			params.put(input.id, param);
+			paramList.add(param);
+		}
+
+		transitionParams = Z3Library.newArray("Expr", paramList.toArray());
+		transitionBody = convert(lambda.getBody(), params, new IdentityHashMap<>());
+	}
+
+	private Object mkConst(String name, Type type) {
+		return invoke(context, "mkConst", name, getSort(type));
+	}
+
+	private Object getSort(Type type) {
+		switch (Util.getName(type)) {
+		case "bool":
+			return invoke(context, "mkBoolSort");
+		case "int":
+			return invoke(context, "mkIntSort");
+		case "real":
+			return invoke(context, "mkRealSort");
+		}
+		throw new JKindException("Unhandled type " + type);
+	}
+
+	@Override
+	public Result query(Sexp sexp) {
+		return query(Collections.emptyList(), sexp);
+	}
+
+	@Override
+	public Result query(List<Symbol> assumptions, Sexp sexp) {
+		return query(assumptions, sexp, false);
+	}
+
+	@Override
+	public Result lazyQuery(Sexp sexp) {
+		return query(Collections.emptyList(), sexp, true);
+	}
+
+	private Result query(List<Symbol> assumptions, Sexp sexp, boolean lazy) {
+		Result result;
+		Model model = null;
+
+		List<Sexp> all = new ArrayList<>(assumptions);
+		all.add(negationAssumption(sexp));
+		scratch(new Cons("check-sat", all).toString());
+
+		List<Object> checked = new ArrayList<>();
+		for (Sexp assumption : all) {
+			checked.add(convert(assumption, null, new IdentityHashMap<>()));
+		}
+
+		long start = System.nanoTime();
+		String status = invoke(solver, "check", checked.toArray()).toString();
+		statistics.check(System.nanoTime() - start);
+
+		switch (status) {
+		case "SATISFIABLE":
+			model = lazy ? new LazyModel() : extractModel();
+			result = new SatResult(model);
+			break;
+
+		case "UNSATISFIABLE":
+			result = new UnsatResult(toLabels(getUnsatAssumptions(assumptions)));
+			break;
+
+		default:
+			result = new UnknownResult(extractModel());
+			break;
+		}
+
+		if (model instanceof LazyModel) {
+			openModel = (LazyModel) model;
+			// Values are counted as they are read
+			statistics.model(0);
+		}
+		return result;
+	}
+
+	private List<Symbol> getUnsatAssumptions(List<Symbol> assumptions) {
+		List<Object> core = Arrays.asList((Object[]) invoke(solver, "getUnsatCore"));
+		List<Symbol> result = new ArrayList<>();
+		for (Symbol assumption : assumptions) {
+			if (core.contains(constants.get(assumption.str))) {
+				result.add(assumption);
+			}
+		}
+		return result;
+	}
+
+	private Model extractModel() {
+		Object z3Model;
+		try {
+			z3Model = invoke(solver, "getModel");
+		} catch (JKindException e) {
+			// No model is available, e.g., after an interrupt
+			return new SimpleModel();
+		}
+
+		long start = System.nanoTime();
+		SimpleModel result = new SimpleModel();
+		for (Entry<String, Type> entry : varTypes.entrySet()) {
+			Object evaluated = invoke(z3Model, "eval", constants.get(entry.getKey()), true);
+			result.addValue(entry.getKey(), getValue(evaluated, entry.getValue()));
+		}
+		statistics.parse(System.nanoTime() - start);
+		statistics.model(varTypes.size());
+		return result;
+	}
+
+	private void closeModel() {
+		if (openModel != null) {
+			openModel.open = false;
+			openModel = null;
+		}
+	}
+
+	/**
+	 * A model which evaluates variables in the Z3 model the first time they
+	 * are read. It is only usable until the solver receives its next
+	 * command, see Solver.lazyQuery.
+	 */
+	private class LazyModel extends Model {
+		private final Object z3Model = invoke(solver, "getModel");
+		private final Map<String, Value> values = new HashMap<>();
+		private boolean open = true;
+
+		public LazyModel() {
+			super(Z3NativeSolver.this.varTypes);
+		}
+
+		@Override
+		public Value getValue(String name) {
+			Value value = values.get(name);
+			if (value != null || !varTypes.containsKey(name)) {
+				return value;
+			}
+			if (!open) {
+				throw new JKindException("Model values requested after the solver moved on");
+			}
+
+			long start = System.nanoTime();
+			Object evaluated = invoke(z3Model, "eval", constants.get(name), true);
+			value = Z3NativeSolver.this.getValue(evaluated, varTypes.get(name));
+			statistics.parse(System.nanoTime() - start);
+			statistics.values(1);
+			values.put(name, value);
+			return value;
+		}
+
+		@Override
+		public Set<String> getVariableNames() {
+			return varTypes.keySet();
+		}
+	}
+
+	private Value getValue(Object expr, Type type) {
+		switch (Util.getName(type)) {
+		case "bool":
+			return BooleanValue.fromBoolean((Boolean) invoke(expr, "isTrue"));
+
+		case "int":
+			return new IntegerValue((BigInteger) invoke(expr, "getBigInteger"));
+
+		case "real":
+			if ((Boolean) invoke(expr, "isIntNum")) {
+				return new RealValue(new BigFraction((BigInteger) invoke(expr, "getBigInteger")));
+			}
+			BigInteger num = (BigInteger) invoke(expr, "getBigIntNumerator");
+			BigInteger denom = (BigInteger) invoke(expr, "getBigIntDenominator");
+			return new RealValue(new BigFraction(num, denom));
+		}
+		throw new JKindException("Unhandled type " + type);
+	}
+
+	@Override
+	public void push() {
+		closeModel();
+		scratch("(push 1)");
+		invoke(solver, "push");
+		statistics.push();
+	}
+
+	@Override
+	public void pop() {
+		closeModel();
+		scratch("(pop 1)");
+		invoke(solver, "pop");
+		statistics.pop();
+	}
+
+	@Override
+	public void comment(String str) {
+		scratch("; " + str);
+	}
+
+	private void scratch(String str) {
+		if (scratch != null) {
+			scratch.println(str);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		/**
+		 * This must be synchronized so that a cancel from another thread never
+		 * reaches a context which has been released
+		 */
+		if (scratch != null) {
+			scratch.close();
+		}
+		if (!closed) {
+			closed = true;
+			invoke(context, "close");
+		}
+	}
+
+	@Override
+	public synchronized void cancel() {
+		// Z3 answers unknown to the check in progress
+		if (!closed) {
+			invoke(context, "interrupt");
+		}
+	}
+
+	/**
+	 * Convert an s-expression, with params giving values for bound names.
+	 * Expressions from Lustre2Sexp share subterms, so each one is converted
+	 * once per scope and looked up in converted afterwards.
+	 */
+	private Object convert(Sexp sexp, Map<String, Object> params, Map<Sexp, Object> converted) {
+		Object result = converted.get(sexp);
+		if (result == null) {
+			result = convertUncached(sexp, params, converted);
+			converted.put(sexp, result);
+		}
+		return result;
+	}
+
+	private Object convertUncached(Sexp sexp, Map<String, Object> params,
+			Map<Sexp, Object> converted) {
+		if (sexp instanceof Symbol) {
+			return convert(((Symbol) sexp).str, params);
+		}
+
+		Cons cons = (Cons) sexp;
+		String head = ((Symbol) cons.head).str;
+		List<Object> args = new ArrayList<>();
+		for (Sexp arg : cons.args) {
+			args.add(convert(arg, params, converted));
+		}
+
+		if (head.equals(TransitionRelation.T.str)) {
+			return invoke(transitionBody, "substitute", transitionParams,
+					Z3Library.newArray("Expr", args.toArray()));
+		}
+		return apply(head, args);
+	}
+
+	private Object convert(String name, Map<String, Object> params) {
+		if (name.equals("true")) {
+			return literals.computeIfAbsent(name, n -> invoke(context, "mkTrue"));
+		} else if (name.equals("false")) {
+			return literals.computeIfAbsent(name, n -> invoke(context, "mkFalse"));
+		} else if (Character.isDigit(name.charAt(0))) {
+			return literals.computeIfAbsent(name, n -> invoke(context, "mkInt", n));
+		}
+
+		Object result = params == null ? null : params.get(name);
+		if (result == null) {
+			result = constants.get(name);
+		}
+		if (result == null) {
+			throw new JKindException("Undeclared symbol: " + name);
+		}
+		return result;
+	}
+
+	private Object apply(String fn, List<Object> args) {
+		switch (fn) {
+		case "and":
+			return invoke(context, "mkAnd", args.toArray());
+		case "or":
+			return invoke(context, "mkOr", args.toArray());
+		case "not":
+			return invoke(context, "mkNot", args.get(0));
+		case "=>":
+			return invoke(context, "mkImplies", args.get(0), args.get(1));
+		case "xor":
+			return invoke(context, "mkXor", args.get(0), args.get(1));
+		case "=":
+			return equal(args);
+		case "ite":
+			List<Object> branches = coerce(args.subList(1, 3));
+			return invoke(context, "mkITE", args.get(0), branches.get(0), branches.get(1));
+		case "+":
+			return invoke(context, "mkAdd", coerce(args).toArray());
+		case "*":
+			return invoke(context, "mkMul", coerce(args).toArray());
+		case "-":
+			if (args.size() == 1) {
+				return invoke(context, "mkUnaryMinus", args.get(0));
+			}
+			return invoke(context, "mkSub", coerce(args).toArray());
+		case "/":
+			// Real division even when both operands are integer literals
+			return invoke(context, "mkDiv", toReal(args.get(0)), toReal(args.get(1)));
+		case "div":
+			return invoke(context, "mkDiv", args.get(0), args.get(1));
+		case "mod":
+			return invoke(context, "mkMod", args.get(0), args.get(1));
+		case "<":
+			return compare("mkLt", args);
+		case "<=":
+			return compare("mkLe", args);
+		case ">":
+			return compare("mkGt", args);
+		case ">=":
+			return compare("mkGe", args);
+		case "to_real":
+			return toReal(args.get(0));
+		case "to_int":
+			return invoke(context, "mkReal2Int", args.get(0));
+		}
+		throw new JKindException("Unhandled function in Z3 conversion: " + fn);
+	}
+
+	private Object equal(List<Object> args) {
+		List<Object> coerced = coerce(args);
+		List<Object> conjuncts = new ArrayList<>();
+		for (int i = 0; i + 1 < coerced.size(); i++) {
+			conjuncts.add(invoke(context, "mkEq", coerced.get(i), coerced.get(i + 1)));
+		}
+		if (conjuncts.size() == 1) {
+			return conjuncts.get(0);
+		}
+		return invoke(context, "mkAnd", conjuncts.toArray());
+	}
+
+	private Object compare(String method, List<Object> args) {
+		List<Object> coerced = coerce(args);
+		return invoke(context, method, coerced.get(0), coerced.get(1));
+	}
+
+	/**
+	 * SMT-LIB text lets integer literals stand for reals, but the bindings
+	 * need operands of one sort
+	 */
+	private List<Object> coerce(List<Object> args) {
+		boolean real = false;
+		for (Object arg : args) {
+			real |= (Boolean) invoke(arg, "isReal");
+		}
+		if (!real) {
+			return args;
+		}
+
+		List<Object> result = new ArrayList<>();
+		for (Object arg : args) {
+			result.add(toReal(arg));
+		}
+		return result;
+	}
+
+	private Object toReal(Object expr) {
+		if ((Boolean) invoke(expr, "isInt")) {
+			return invoke(context, "mkInt2Real", expr);
+		}
+		return expr;
+	}
+}
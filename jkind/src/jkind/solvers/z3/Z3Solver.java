@@ -1,21 +1,23 @@
 package jkind.solvers.z3;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
-import jkind.lustre.NamedType;
-import jkind.lustre.VarDecl;
+import jkind.JKindException;
 import jkind.sexp.Cons;
 import jkind.sexp.Sexp;
 import jkind.sexp.Symbol;
-import jkind.solvers.Result;
-import jkind.solvers.SatResult;
-import jkind.solvers.UnknownResult;
-import jkind.solvers.UnsatResult;
+import jkind.solvers.smtlib2.SexpParser;
 import jkind.solvers.smtlib2.SmtLib2Solver;
 
 public class Z3Solver extends SmtLib2Solver {
 	public Z3Solver(String scratchBase) {
-		super(scratchBase, new ProcessBuilder(getZ3(), "-smt2", "-in"), "Z3");
+		super(scratchBase, getProcessBuilder(), "Z3");
+	}
+
+	public static ProcessBuilder getProcessBuilder() {
+		return new ProcessBuilder(getZ3(), "-smt2", "-in");
 	}
 
 	private static String getZ3() {
@@ -29,33 +31,47 @@ public class Z3Solver extends SmtLib2Solver {
 	@Override
 	public void initialize() {
 		send("(set-option :produce-models true)");
+		send("(set-option :produce-unsat-cores true)");
 	}
 
-	private int assumCount = 1;
+	@Override
+	protected boolean supportsAssumptions() {
+		return true;
+	}
 
 	@Override
-	public Result query(Sexp sexp) {
-		Result result;
+	protected Sexp checkSatAssuming(List<Sexp> assumptions) {
+		// Older versions of Z3 only accept assumptions as arguments to check-sat
+		return new Cons("check-sat", assumptions);
+	}
 
-		Symbol assum = new Symbol("assum" + assumCount++);
-		define(new VarDecl(assum.str, NamedType.BOOL));
-		send(new Cons("assert", new Cons("=>", assum, new Cons("not", sexp))));
-		send(new Cons("check-sat", assum));
+	@Override
+	public boolean supportsInterpolation() {
+		// Interpolation was removed in Z3 4.8
+		return !isVersionAtLeast(4, 8);
+	}
+
+	@Override
+	protected List<Sexp> getInterpolants(List<String> names) {
+		send("(get-interpolant " + String.join(" ", names) + ")");
 		send("(echo \"" + DONE + "\")");
-		String status = readFromSolver();
-		if (isSat(status)) {
-			send("(get-model)");
-			send("(echo \"" + DONE + "\")");
-			result = new SatResult(parseModel(readFromSolver()));
-		} else if (isUnsat(status)) {
-			result = new UnsatResult();
-		} else {
-			// Even for unknown we can get a partial model
-			send("(get-model)");
-			send("(echo \"" + DONE + "\")");
-			result = new UnknownResult(parseModel(readFromSolver()));
+
+		// Z3 before 4.8 replies with (interpolants f1 ... fn)
+		List<Sexp> response = SexpParser.parse(readFromSolver());
+		if (response.size() == 1 && response.get(0) instanceof Cons) {
+			Cons cons = (Cons) response.get(0);
+			if (cons.head.equals(new Symbol("interpolants"))) {
+				return new ArrayList<>(cons.args);
+			}
 		}
+		throw new JKindException("Error parsing " + name + " interpolants");
+	}
 
-		return result;
+	@Override
+	protected List<Symbol> getUnsatAssumptions(List<Symbol> assumptions) {
+		// Z3 reports the assumptions in the core of a check with assumptions
+		send("(get-unsat-core)");
+		send("(echo \"" + DONE + "\")");
+		return readUnsatAssumptions(assumptions);
 	}
 }
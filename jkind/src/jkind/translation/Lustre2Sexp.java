@@ -2,7 +2,9 @@ package jkind.translation;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jkind.lustre.ArrayAccessExpr;
 import jkind.lustre.ArrayExpr;
@@ -27,8 +29,8 @@ import jkind.lustre.TupleExpr;
 import jkind.lustre.UnaryExpr;
 import jkind.lustre.VarDecl;
 import jkind.lustre.visitors.ExprVisitor;
-import jkind.sexp.Cons;
 import jkind.sexp.Sexp;
+import jkind.sexp.SexpFactory;
 import jkind.sexp.Symbol;
 import jkind.util.SexpUtil;
 import jkind.util.StreamIndex;
@@ -37,20 +39,32 @@ import jkind.util.Util;
 public class Lustre2Sexp implements ExprVisitor<Sexp> {
 	public static final Symbol INIT = new Symbol("%init");
 	private final int index;
+	private final SexpFactory factory;
+	private final Map<String, Symbol> currSymbols = new HashMap<>();
+	private final Map<String, Symbol> preSymbols = new HashMap<>();
 	private boolean pre = false;
 
 	public Lustre2Sexp(int index) {
+		this(index, new SexpFactory());
+	}
+
+	/**
+	 * Translations that share a factory share equal subterms, see SexpFactory
+	 */
+	public Lustre2Sexp(int index, SexpFactory factory) {
 		this.index = index;
+		this.factory = factory;
 	}
 
 	public static TransitionRelation constructTransitionRelation(Node node) {
-		Lustre2Sexp visitor = new Lustre2Sexp(1);
+		SexpFactory factory = new SexpFactory();
+		Lustre2Sexp visitor = new Lustre2Sexp(1, factory);
 		List<Sexp> conjuncts = new ArrayList<>();
 		
 		for (Equation eq : node.equations) {
 			Sexp body = eq.expr.accept(visitor);
 			Sexp head = eq.lhs.get(0).accept(visitor);
-			conjuncts.add(new Cons("=", head, body));
+			conjuncts.add(factory.cons("=", head, body));
 		}
 
 		for (Expr assertion : node.assertions) {
@@ -66,11 +80,13 @@ public class Lustre2Sexp implements ExprVisitor<Sexp> {
 	}
 
 	private Symbol curr(String id) {
-		return new StreamIndex(id, index).getEncoded();
+		return currSymbols.computeIfAbsent(id,
+				x -> factory.symbol(new StreamIndex(x, index).getEncoded().str));
 	}
 
 	private Symbol pre(String id) {
-		return new StreamIndex(id, index - 1).getEncoded();
+		return preSymbols.computeIfAbsent(id,
+				x -> factory.symbol(new StreamIndex(x, index - 1).getEncoded().str));
 	}
 
 	private VarDecl curr(VarDecl vd) {
@@ -120,31 +136,31 @@ public class Lustre2Sexp implements ExprVisitor<Sexp> {
 		switch (e.op) {
 		case NOTEQUAL:
 		case XOR:
-			return new Cons("not", new Cons("=", left, right));
+			return factory.cons("not", factory.cons("=", left, right));
 
 		case ARROW:
 			if (pre) {
 				throw new IllegalArgumentException(
 						"Arrows cannot be nested under pre during translation to sexp");
 			}
-			return new Cons("ite", INIT, left, right);
+			return factory.cons("ite", INIT, left, right);
 
 		default:
-			return new Cons(e.op.toString(), left, right);
+			return factory.cons(e.op.toString(), left, right);
 		}
 	}
 
 	@Override
 	public Sexp visit(BoolExpr e) {
-		return Sexp.fromBoolean(e.value);
+		return factory.intern(Sexp.fromBoolean(e.value));
 	}
 
 	@Override
 	public Sexp visit(CastExpr e) {
 		if (e.type == NamedType.REAL) {
-			return new Cons("to_real", e.expr.accept(this));
+			return factory.cons("to_real", e.expr.accept(this));
 		} else if (e.type == NamedType.INT) {
-			return new Cons("to_int", e.expr.accept(this));
+			return factory.cons("to_int", e.expr.accept(this));
 		} else {
 			throw new IllegalArgumentException();
 		}
@@ -162,13 +178,13 @@ public class Lustre2Sexp implements ExprVisitor<Sexp> {
 
 	@Override
 	public Sexp visit(IfThenElseExpr e) {
-		return new Cons("ite", e.cond.accept(this), e.thenExpr.accept(this),
+		return factory.cons("ite", e.cond.accept(this), e.thenExpr.accept(this),
 				e.elseExpr.accept(this));
 	}
 
 	@Override
 	public Sexp visit(IntExpr e) {
-		return Sexp.fromBigInt(e.value);
+		return factory.intern(Sexp.fromBigInt(e.value));
 	}
 
 	@Override
@@ -178,9 +194,10 @@ public class Lustre2Sexp implements ExprVisitor<Sexp> {
 
 	@Override
 	public Sexp visit(RealExpr e) {
-		Sexp numerator = Sexp.fromBigInt(e.value.unscaledValue());
-		Sexp denominator = Sexp.fromBigInt(BigDecimal.TEN.pow(e.value.scale()).toBigInteger());
-		return new Cons("/", numerator, denominator);
+		Sexp numerator = factory.intern(Sexp.fromBigInt(e.value.unscaledValue()));
+		Sexp denominator = factory.intern(Sexp.fromBigInt(BigDecimal.TEN.pow(e.value.scale())
+				.toBigInteger()));
+		return factory.cons("/", numerator, denominator);
 	}
 
 	@Override
@@ -217,10 +234,10 @@ public class Lustre2Sexp implements ExprVisitor<Sexp> {
 			return expr;
 
 		case NEGATIVE:
-			return new Cons("-", new Symbol("0"), e.expr.accept(this));
+			return factory.cons("-", factory.symbol("0"), e.expr.accept(this));
 
 		default:
-			return new Cons(e.op.toString(), e.expr.accept(this));
+			return factory.cons(e.op.toString(), e.expr.accept(this));
 		}
 	}
 }
@@ -1,10 +1,13 @@
 package jkind.translation;
 
+import java.util.List;
 import java.util.Map;
 
 import jkind.lustre.Node;
 import jkind.lustre.Type;
+import jkind.lustre.builders.NodeBuilder;
 import jkind.slicing.DependencyMap;
+import jkind.slicing.LustreSlicer;
 import jkind.util.Util;
 
 public class Specification {
@@ -19,4 +22,13 @@ public class Specification {
 		this.typeMap = Util.getTypeMap(node);
 		this.transitionRelation = Lustre2Sexp.constructTransitionRelation(node);
 	}
+
+	/**
+	 * Restrict the specification to the given properties and their cone of
+	 * influence
+	 */
+	public Specification slice(List<String> properties) {
+		Node restricted = new NodeBuilder(node).clearProperties().addProperties(properties).build();
+		return new Specification(LustreSlicer.slice(restricted, dependencyMap), dependencyMap);
+	}
 }
@@ -67,6 +67,14 @@ public class StreamIndex {
 		return result;
 	}
 
+	public static List<String> getEncodedNames(List<StreamIndex> streamIndexes) {
+		List<String> result = new ArrayList<>();
+		for (StreamIndex streamIndex : streamIndexes) {
+			result.add(streamIndex.getEncoded().str);
+		}
+		return result;
+	}
+
 	public static Sexp conjoinEncodings(List<String> streams, int index) {
 		return SexpUtil.conjoin(getEncoded(fromList(streams, index)));
 	}
@@ -0,0 +1,69 @@
+package jkind.writers;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import jkind.JKindException;
+import jkind.solvers.SolverStatistics;
+import jkind.solvers.SolverStatistics.Step;
+
+/**
+ * Writes the solver statistics of each engine as JSON, one object per engine
+ * with one entry per step k. Times are in milliseconds.
+ */
+public class SolverStatisticsWriter {
+	public static void write(String filename, Map<String, SolverStatistics> statistics) {
+		try (PrintWriter out = new PrintWriter(filename)) {
+			out.println("{");
+			out.println("  \"engines\": [");
+			Iterator<Entry<String, SolverStatistics>> iterator = statistics.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry<String, SolverStatistics> entry = iterator.next();
+				writeEngine(out, entry.getKey(), entry.getValue());
+				out.println(iterator.hasNext() ? "," : "");
+			}
+			out.println("  ]");
+			out.println("}");
+		} catch (FileNotFoundException e) {
+			throw new JKindException("Unable to write solver statistics file", e);
+		}
+	}
+
+	private static void writeEngine(PrintWriter out, String name, SolverStatistics statistics) {
+		out.println("    {");
+		out.println("      \"name\": \"" + name + "\",");
+		out.println("      \"steps\": [");
+		Iterator<Step> iterator = statistics.getSteps().iterator();
+		while (iterator.hasNext()) {
+			out.print("        " + toJson(iterator.next()));
+			out.println(iterator.hasNext() ? "," : "");
+		}
+		out.println("      ]");
+		out.print("    }");
+	}
+
+	private static String toJson(Step step) {
+		StringBuilder latencies = new StringBuilder();
+		for (long count : step.latencies) {
+			if (latencies.length() > 0) {
+				latencies.append(", ");
+			}
+			latencies.append(count);
+		}
+
+		return "{\"k\": " + step.k + ", \"bytesSent\": " + step.bytesSent
+				+ ", \"bytesReceived\": " + step.bytesReceived + ", \"checks\": " + step.checks
+				+ ", \"checkTime\": " + millis(step.checkNanos) + ", \"checkLatencyHistogram\": ["
+				+ latencies + "], \"parseTime\": " + millis(step.parseNanos) + ", \"models\": "
+				+ step.models + ", \"modelValues\": " + step.modelValues + ", \"maxDepth\": "
+				+ step.maxDepth + "}";
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import jkind.lustre.Expr;
 import jkind.results.Counterexample;
+import jkind.solvers.SolverStatistics;
 
 public abstract class Writer {
 	public abstract void begin();
@@ -20,4 +21,8 @@ public abstract class Writer {
 			Map<String, Counterexample> inductiveCounterexamples, double runtime);
 
 	public abstract void writeBaseStep(List<String> props, int k);
+
+	/** Statistics of each engine's solver, written before end if requested */
+	public void writeSolverStatistics(Map<String, SolverStatistics> statistics) {
+	}
 }
@@ -4,7 +4,9 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import jkind.interval.BoolInterval;
 import jkind.interval.NumericInterval;
@@ -14,6 +16,8 @@ import jkind.lustre.values.BooleanValue;
 import jkind.lustre.values.Value;
 import jkind.results.Counterexample;
 import jkind.results.Signal;
+import jkind.solvers.SolverStatistics;
+import jkind.solvers.SolverStatistics.Step;
 import jkind.util.Util;
 
 public class XmlWriter extends Writer {
@@ -116,6 +120,40 @@ public class XmlWriter extends Writer {
 		}
 	}
 
+	@Override
+	public void writeSolverStatistics(Map<String, SolverStatistics> statistics) {
+		for (Entry<String, SolverStatistics> entry : statistics.entrySet()) {
+			out.println("  <SolverStatistics engine=\"" + entry.getKey() + "\">");
+			for (Step step : entry.getValue().getSteps()) {
+				out.println("    <Step k=\"" + step.k + "\" bytesSent=\"" + step.bytesSent
+						+ "\" bytesReceived=\"" + step.bytesReceived + "\" checks=\"" + step.checks
+						+ "\" checkTime=\"" + seconds(step.checkNanos) + "\" parseTime=\""
+						+ seconds(step.parseNanos) + "\" models=\"" + step.models
+						+ "\" modelValues=\"" + step.modelValues + "\" maxDepth=\"" + step.maxDepth
+						+ "\">");
+				out.println("      <CheckLatencyHistogram unit=\"ms\">"
+						+ formatHistogram(step.latencies) + "</CheckLatencyHistogram>");
+				out.println("    </Step>");
+			}
+			out.println("  </SolverStatistics>");
+		}
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+	}
+
+	private static String formatHistogram(long[] counts) {
+		StringBuilder result = new StringBuilder();
+		for (long count : counts) {
+			if (result.length() > 0) {
+				result.append(" ");
+			}
+			result.append(count);
+		}
+		return result.toString();
+	}
+
 	@Override
 	public void writeUnknown(List<String> props, int trueFor,
 			Map<String, Counterexample> inductiveCounterexamples, double runtime) {